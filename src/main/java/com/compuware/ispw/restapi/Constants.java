@@ -29,7 +29,7 @@ public class Constants {
 	public static final String SET_STATE_WAITING_APPROVAL = "Waiting-Approval";
 	public static final String SET_STATE_WAITING_LOCK = "Waiting-Lock";
 
-	public static final int POLLING_COUNT = 120;
+	public static final int POLLING_MAX_ATTEMPTS = 60;
 	public static final int POLLING_INTERVAL = 2000;
 
 	public static final String ENV_VAR_WORKSPACE = "WORKSPACE";
@@ -2,52 +2,50 @@ package com.compuware.ispw.restapi;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.ConnectException;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.List;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509ExtendedTrustManager;
+import java.util.concurrent.CompletableFuture;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
-import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
-import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
-import com.compuware.ispw.restapi.IspwRestApiRequest.DescriptorImpl;
 import com.compuware.ispw.restapi.IspwRestApiRequestStep.Execution;
 import com.compuware.ispw.restapi.action.IAction;
 import com.compuware.ispw.restapi.action.IspwCommand;
 import com.compuware.ispw.restapi.auth.Authenticator;
 import com.compuware.ispw.restapi.auth.CredentialBasicAuthentication;
+import com.compuware.ispw.restapi.util.AsyncHttpClientRegistry;
+import com.compuware.ispw.restapi.util.ContentEncoding;
+import com.compuware.ispw.restapi.util.ContentMatcher;
+import com.compuware.ispw.restapi.util.CredentialsCache;
+import com.compuware.ispw.restapi.util.HttpClientRegistry;
 import com.compuware.ispw.restapi.util.HttpClientUtil;
 import com.compuware.ispw.restapi.util.HttpRequestNameValuePair;
 import com.compuware.ispw.restapi.util.ReflectUtils;
 import com.compuware.ispw.restapi.util.RequestAction;
+import com.compuware.ispw.restapi.util.ResolvedConnection;
+import com.compuware.ispw.restapi.util.ResponseCodeSet;
 import com.compuware.ispw.restapi.util.RestApiUtils;
-import com.google.common.collect.Range;
 import com.google.common.io.ByteStreams;
 import hudson.AbortException;
 import hudson.CloseProofOutputStream;
@@ -58,7 +56,7 @@ import hudson.model.BuildListener;
 import hudson.model.Item;
 import hudson.model.TaskListener;
 import hudson.remoting.RemoteOutputStream;
-import hudson.security.ACL;
+import hudson.remoting.VirtualChannel;
 import jenkins.security.MasterToSlaveCallable;
 
 /**
@@ -68,6 +66,14 @@ import jenkins.security.MasterToSlaveCallable;
 public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentSupplier, RuntimeException> {
 
 	private static final long serialVersionUID = -2066857816168989599L;
+
+	/**
+	 * Default transport of all jobs, true to send requests made on the controller on the non-blocking client
+	 */
+	static final boolean ASYNC_TRANSPORT = Boolean.getBoolean(HttpRequestExecution.class.getName() + ".asyncTransport");
+
+	private static final String ANY_RESPONSE_CODE = "100:599";
+
 	private final String url;
 	private final HttpMode httpMode;
 	private final boolean ignoreSslErrors;
@@ -76,14 +82,17 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 	private final String body;
 	private final List<HttpRequestNameValuePair> headers;
 
-	private final String validResponseCodes;
+	private final ResponseCodeSet validResponseCodes;
 	private final String validResponseContent;
+	private final String invalidResponseContent;
 	private final FilePath outputFile;
 	private final int timeout;
 	private final boolean consoleLogResponseBody;
 	private final ResponseHandle responseHandle;
 
 	private final Authenticator authenticator;
+	private boolean asyncTransport = ASYNC_TRANSPORT;
+	private FilePath spillDirectory;
 
 	private final OutputStream remoteLogger;
 	private transient PrintStream localLogger;
@@ -103,10 +112,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		PrintStream logger = taskListener.getLogger();
 		IAction action = ReflectUtils.createAction(IspwCommand.GetSetInfo, logger);
 
-		String cesUrl = RestApiUtils.getCesUrl(http.getConnectionId());
-		String cesIspwHost = RestApiUtils.getIspwHostLabel(http.getConnectionId());
+		ResolvedConnection connection = ResolvedConnection.get(http.getConnectionId());
+		String cesUrl = connection.getCesUrl();
+		String cesIspwHost = connection.getIspwHostLabel();
 
-		String cesIspwToken = RestApiUtils.getCesToken(http.getCredentialsId(), build.getParent());
+		String cesIspwToken = http.getToken(); // resolved by the step already
 		if (RestApiUtils.isIspwDebugMode())
 			logger.println("...ces.url=" + cesUrl + ", ces.ispw.host=" + cesIspwHost
 					+ ", ces.ispw.token=" + cesIspwToken);
@@ -124,8 +134,8 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 
 		return new HttpRequestExecution(url, HttpMode.GET, http.getIgnoreSslErrors(),
 				http.getHttpProxy(), body, headers, http.getTimeout(), http.getAuthentication(),
-				http.getValidResponseCodes(), http.getValidResponseContent(),
-				http.getConsoleLogResponseBody(), outputFile, ResponseHandle.STRING,
+				http.getValidResponseCodeSet(), http.getValidResponseContent(),
+				http.getInvalidResponseContent(), http.getConsoleLogResponseBody(), outputFile, ResponseHandle.STRING,
 
 				project, taskListener.getLogger());
 
@@ -144,10 +154,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		PrintStream logger = taskListener.getLogger();
 		IAction action = ReflectUtils.createAction(IspwCommand.GetSetInfo, logger);
 
-		String cesUrl = RestApiUtils.getCesUrl(step.getConnectionId());
-		String cesIspwHost = RestApiUtils.getIspwHostLabel(step.getConnectionId());
+		ResolvedConnection connection = ResolvedConnection.get(step.getConnectionId());
+		String cesUrl = connection.getCesUrl();
+		String cesIspwHost = connection.getIspwHostLabel();
 
-		String cesIspwToken = RestApiUtils.getCesToken(step.getCredentialsId(), execution.getProject());
+		String cesIspwToken = step.getToken(); // resolved by the step already
 		if (RestApiUtils.isIspwDebugMode())
 			logger.println("...ces.url=" + cesUrl + ", ces.ispw.host=" + cesIspwHost
 					+ ", ces.ispw.token=" + cesIspwToken);
@@ -168,10 +179,10 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 				step.getHttpProxy(), body, headers, step.getTimeout(),
 				step.getAuthentication(),
 
-				step.getValidResponseCodes(), step.getValidResponseContent(),
+				step.getValidResponseCodeSet(), step.getValidResponseContent(), step.getInvalidResponseContent(),
 				step.getConsoleLogResponseBody(), outputFile,
-				step.getResponseHandle(),
-				project, taskListener.getLogger());
+				ResponseHandle.STRING, // the set status is parsed from the response
+				project, taskListener.getLogger()).withAsyncTransport(step.getAsyncTransport());
 	}
 	
 	static HttpRequestExecution from(IspwRestApiRequest http,
@@ -189,12 +200,12 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 					http.getHttpProxy(), body, headers, http.getTimeout(),
 					http.getAuthentication(),
 
-					http.getValidResponseCodes(), http.getValidResponseContent(),
+					http.getValidResponseCodeSet(), http.getValidResponseContent(), http.getInvalidResponseContent(),
 					http.getConsoleLogResponseBody(), outputFile,
 					ResponseHandle.NONE,
 
 					project,
-					taskListener.getLogger());
+					taskListener.getLogger()).withSpillDirectory(ResponseBody.getSpillDirectory(build));
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
@@ -209,10 +220,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 				step.getHttpProxy(), step.getRequestBody(), headers, step.getTimeout(),
 				step.getAuthentication(),
 
-				step.getValidResponseCodes(), step.getValidResponseContent(),
+				step.getValidResponseCodeSet(), step.getValidResponseContent(), step.getInvalidResponseContent(),
 				step.getConsoleLogResponseBody(), outputFile,
 				step.getResponseHandle(),
-				project, taskListener.getLogger());
+				project, taskListener.getLogger()).withAsyncTransport(step.getAsyncTransport())
+				.withSpillDirectory(ResponseBody.getSpillDirectory(execution.getRun()));
 	}
 
 	private HttpRequestExecution(
@@ -220,7 +232,7 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 			String httpProxy, String body, List<HttpRequestNameValuePair> headers, Integer timeout,
 			String authentication,
 
-			String validResponseCodes, String validResponseContent,
+			ResponseCodeSet validResponseCodes, String validResponseContent, String invalidResponseContent,
 			Boolean consoleLogResponseBody, FilePath outputFile,
 			ResponseHandle responseHandle,
 
@@ -238,12 +250,8 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 			Authenticator auth = HttpRequestGlobalConfig.get().getAuthentication(authentication);
 
 			if (auth == null) {
-				StandardUsernamePasswordCredentials credential = CredentialsMatchers.firstOrNull(
-						CredentialsProvider.lookupCredentials(
-								StandardUsernamePasswordCredentials.class,
-								project, ACL.SYSTEM,
-								URIRequirementBuilder.fromUri(url).build()),
-						CredentialsMatchers.withId(authentication));
+				StandardUsernamePasswordCredentials credential =
+						CredentialsCache.getUsernamePassword(authentication, project, url);
 				if (credential != null) {
 					auth = new CredentialBasicAuthentication(credential);
 				}
@@ -260,20 +268,122 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 
 		this.validResponseCodes = validResponseCodes;
 		this.validResponseContent = validResponseContent != null ? validResponseContent : "";
+		this.invalidResponseContent = invalidResponseContent != null ? invalidResponseContent : "";
 		this.consoleLogResponseBody = Boolean.TRUE.equals(consoleLogResponseBody);
-		
-		
-		/* Force to use response handle
-		this.responseHandle = this.consoleLogResponseBody || !this.validResponseContent.isEmpty() ?
-				ResponseHandle.STRING : responseHandle;*/
-		this.responseHandle = ResponseHandle.STRING;
-		
 		this.outputFile = outputFile;
 
+		// the body is read once: streamed to the output file if there is one, otherwise into memory. The plugin reads
+		// the content of every response itself, e.g. for the end log of the action, so a stream is never left open:
+		// it would not reach the controller from an agent and would hold the pooled connection
+		if (this.consoleLogResponseBody || outputFile == null || responseHandle == ResponseHandle.STRING) {
+			this.responseHandle = ResponseHandle.STRING;
+		} else {
+			this.responseHandle = ResponseHandle.NONE;
+		}
+
 		this.localLogger = logger;
 		this.remoteLogger = new RemoteOutputStream(new CloseProofOutputStream(logger));
 	}
 
+	// the transport of the given request, without anything that belongs to its build
+	private HttpRequestExecution(HttpRequestExecution request) {
+		this.url = request.url;
+		this.httpMode = request.httpMode;
+		this.ignoreSslErrors = request.ignoreSslErrors;
+		this.httpProxy = request.httpProxy;
+
+		this.body = request.body;
+		this.headers = request.headers;
+		this.timeout = request.timeout;
+		this.authenticator = request.authenticator;
+		this.asyncTransport = request.asyncTransport;
+
+		// every response is handed on as it came, the builds sharing it check it themselves
+		this.validResponseCodes = ResponseCodeSet.of(ANY_RESPONSE_CODE);
+		this.validResponseContent = "";
+		this.invalidResponseContent = "";
+		this.consoleLogResponseBody = false;
+		this.outputFile = null;
+		this.responseHandle = ResponseHandle.STRING;
+
+		this.remoteLogger = new DiscardingOutputStream();
+	}
+
+	String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @param asyncTransport
+	 *            true to send this request on the non-blocking client where possible, false or null for the global
+	 *            default
+	 * @return this request
+	 */
+	HttpRequestExecution withAsyncTransport(Boolean asyncTransport) {
+		this.asyncTransport = Boolean.TRUE.equals(asyncTransport) || ASYNC_TRANSPORT;
+		return this;
+	}
+
+	/**
+	 * @param spillDirectory
+	 *            where a large response body is spilled to on the controller, null to keep it in memory
+	 * @return this request
+	 */
+	HttpRequestExecution withSpillDirectory(FilePath spillDirectory) {
+		this.spillDirectory = spillDirectory;
+		return this;
+	}
+
+	/**
+	 * @param channel
+	 *            the channel the request would run on, null for the controller
+	 * @return true if {@link #callAsync()} can send this request without blocking
+	 */
+	boolean isAsync(VirtualChannel channel) {
+		return asyncTransport && (channel == null || channel == FilePath.localChannel);
+	}
+
+	/**
+	 * Identifies requests that return the same content: the same URL called with the same credentials through the
+	 * same proxy, trust and timeout settings
+	 */
+	String getPollKey() {
+		StringBuilder key = new StringBuilder(url);
+		for (HttpRequestNameValuePair header : headers) {
+			if ("Authorization".equalsIgnoreCase(header.getName())) {
+				key.append('\n').append(header.getValue());
+			}
+		}
+		if (authenticator != null) {
+			key.append('\n').append(authenticator.getKeyName());
+		}
+		key.append('\n').append(httpProxy).append('\n').append(ignoreSslErrors).append('\n').append(timeout);
+		return key.toString();
+	}
+
+	/**
+	 * @return a request sending the same call as this one which neither logs to the build nor saves the response,
+	 *         for builds sharing the response, see {@link #processShared(ResponseContentSupplier)}
+	 */
+	HttpRequestExecution forSharedFetch() {
+		return new HttpRequestExecution(this);
+	}
+
+	/**
+	 * Handle a response fetched by {@link #forSharedFetch()} of an equal request as if this request got it: log it to
+	 * the build of this request, check it and save it to the output file of this request
+	 *
+	 * @param response
+	 *            the buffered response
+	 * @throws IOException
+	 *             if the response is not accepted or cannot be saved
+	 * @throws InterruptedException
+	 *             if interrupted while saving
+	 */
+	void processShared(ResponseContentSupplier response) throws IOException, InterruptedException {
+		processResponse(response);
+	}
+
 	@Override
 	public ResponseContentSupplier call() throws RuntimeException {
 		if (RestApiUtils.isIspwDebugMode()) {
@@ -287,13 +397,115 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 
 		try {
 			return authAndRequest();
-		} catch (IOException | InterruptedException |
-				KeyStoreException | NoSuchAlgorithmException | KeyManagementException e) {
+		} catch (IOException | InterruptedException e) {
 			throw new IllegalStateException(e);
 		}
 	}
 
-	private PrintStream logger() {
+	/**
+	 * Send the request on the non-blocking client. The calling thread only prepares the request, the response is
+	 * processed on an I/O thread of the client. A form login which is not cached yet still goes through the blocking
+	 * client. Only usable on the controller, see {@link #isAsync(VirtualChannel)}.
+	 *
+	 * @return completed with the response; cancelling it aborts the request
+	 */
+	public CompletableFuture<ResponseContentSupplier> callAsync() {
+		CompletableFuture<ResponseContentSupplier> result = new CompletableFuture<>();
+		try {
+			URL requestUrl = new URL(url);
+			HttpClientUtil clientUtil = new HttpClientUtil();
+			HttpRequestBase httpRequestBase = clientUtil.createRequestBase(new RequestAction(requestUrl, httpMode, body, null, headers));
+			httpRequestBase.setConfig(AsyncHttpClientRegistry.requestConfig(httpProxy, timeout));
+			HttpContext context = new BasicHttpContext();
+			context.setAttribute(HttpClientContext.COOKIE_STORE, new BasicCookieStore());
+
+			if (RestApiUtils.isIspwDebugMode()) {
+				logger().println("HttpMethod: " + httpMode + " (async)");
+				logger().println("URL: " + url);
+			}
+
+			auth(HttpClientRegistry.getClient(requestUrl, httpProxy, ignoreSslErrors, timeout), httpRequestBase, context);
+			send(requestUrl, httpRequestBase, context, true, result);
+			result.whenComplete((response, x) -> {
+				if (result.isCancelled()) {
+					httpRequestBase.abort();
+				}
+			});
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	private void send(URL requestUrl, HttpRequestBase httpRequestBase, HttpContext context, boolean retryRejected,
+			CompletableFuture<ResponseContentSupplier> result) {
+		CloseableHttpAsyncClient httpclient = AsyncHttpClientRegistry.getClient(requestUrl, ignoreSslErrors);
+		httpclient.execute(httpRequestBase, context, new FutureCallback<HttpResponse>() {
+
+			@Override
+			public void completed(HttpResponse httpResponse) {
+				try {
+					// the content is already buffered by the client, compressed as it came
+					ContentEncoding.decode(httpResponse);
+					ResponseContentSupplier response = new ResponseContentSupplier(responseHandle, httpResponse,
+							spillDirectory);
+					if (retryRejected && isRejected(response) && authenticator.onRejected(context, httpRequestBase)) {
+						// the reused session was rejected, authenticate again and retry once
+						response.close();
+						auth(HttpClientRegistry.getClient(requestUrl, httpProxy, ignoreSslErrors, timeout),
+								httpRequestBase, context);
+						send(requestUrl, httpRequestBase, context, false, result);
+						return;
+					}
+					complete(response, result);
+				} catch (IOException | InterruptedException | RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void failed(Exception e) {
+				ResponseContentSupplier response = toResponse(e);
+				if (response != null) {
+					complete(response, result);
+				} else {
+					result.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+	}
+
+	private void complete(ResponseContentSupplier response, CompletableFuture<ResponseContentSupplier> result) {
+		if (outputFile != null) {
+			// saving may go through a remoting channel, keep it off the I/O thread
+			StepExecutors.supply(() -> {
+				processResponse(response);
+				return response;
+			}).whenComplete((r, x) -> {
+				if (x != null) {
+					result.completeExceptionally(x);
+				} else {
+					result.complete(r);
+				}
+			});
+			return;
+		}
+
+		try {
+			processResponse(response);
+			result.complete(response);
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	// the build log, usable wherever this request runs
+	PrintStream logger() {
 		if (localLogger == null) {
 			try {
 				localLogger = new PrintStream(remoteLogger, true, StandardCharsets.UTF_8.name());
@@ -304,70 +516,63 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		return localLogger;
 	}
 
-	private ResponseContentSupplier authAndRequest()
-			throws IOException, InterruptedException, KeyStoreException, NoSuchAlgorithmException, KeyManagementException {
+	private ResponseContentSupplier authAndRequest() throws IOException, InterruptedException {
 		//only leave open if no error happen
 		ResponseHandle responseHandle = ResponseHandle.NONE;
-		CloseableHttpClient httpclient = null;
+		ResponseContentSupplier response = null;
 		try {
-			HttpClientBuilder clientBuilder = HttpClientBuilder.create().useSystemProperties();
-			configureTimeoutAndSsl(clientBuilder);
-			if (this.httpProxy != null) {
-				clientBuilder.setProxy(this.httpProxy);
-			}
+			URL requestUrl = new URL(url);
+			CloseableHttpClient httpclient =
+					HttpClientRegistry.getClient(requestUrl, httpProxy, ignoreSslErrors, timeout);
 
 			HttpClientUtil clientUtil = new HttpClientUtil();
-			HttpRequestBase httpRequestBase = clientUtil.createRequestBase(new RequestAction(new URL(url), httpMode, body, null, headers));
+			HttpRequestBase httpRequestBase = clientUtil.createRequestBase(new RequestAction(requestUrl, httpMode, body, null, headers));
 			HttpContext context = new BasicHttpContext();
-
-			httpclient = auth(clientBuilder, httpRequestBase, context);
-
-			ResponseContentSupplier response = executeRequest(httpclient, clientUtil, httpRequestBase, context);
+			// the client is shared, keep cookies of this request apart from other builds
+			context.setAttribute(HttpClientContext.COOKIE_STORE, new BasicCookieStore());
+
+			auth(httpclient, httpRequestBase, context);
+
+			response = executeRequest(httpclient, clientUtil, httpRequestBase, context);
+			if (isRejected(response) && authenticator.onRejected(context, httpRequestBase)) {
+				// the reused session was rejected, authenticate again and retry once
+				response.close();
+				response = null;
+				auth(httpclient, httpRequestBase, context);
+				response = executeRequest(httpclient, clientUtil, httpRequestBase, context);
+			}
 			processResponse(response);
 
 			responseHandle = this.responseHandle;
-			if (responseHandle == ResponseHandle.LEAVE_OPEN) {
-				response.setHttpClient(httpclient);
-			}
 			return response;
 		} finally {
-			if (responseHandle != ResponseHandle.LEAVE_OPEN) {
-				if (httpclient != null) {
-					httpclient.close();
-				}
+			// closing the content stream releases the connection back to the pool
+			if (responseHandle != ResponseHandle.LEAVE_OPEN && response != null) {
+				response.close();
 			}
 		}
 	}
 
-	private void configureTimeoutAndSsl(HttpClientBuilder clientBuilder) throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
-		//timeout
-		if (timeout > 0) {
-			int t = timeout * 1000;
-			RequestConfig config = RequestConfig.custom()
-					.setSocketTimeout(t)
-					.setConnectTimeout(t)
-					.setConnectionRequestTimeout(t)
-					.build();
-			clientBuilder.setDefaultRequestConfig(config);
-		}
-		//Ignore SSL errors
-		if (ignoreSslErrors) {
-			SSLContext sc = SSLContext.getInstance("SSL");
-			sc.init(null, new TrustManager[]{new NoopTrustManager()}, new java.security.SecureRandom());
-			SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sc, NoopHostnameVerifier.INSTANCE);
-			clientBuilder.setSSLSocketFactory(sslsf);
-		}
-	}
-
-	private CloseableHttpClient auth(
-			HttpClientBuilder clientBuilder, HttpRequestBase httpRequestBase,
+	private void auth(
+			CloseableHttpClient httpclient, HttpRequestBase httpRequestBase,
 			HttpContext context) throws IOException, InterruptedException {
 		if (authenticator == null) {
-			return clientBuilder.build();
+			return;
 		}
 
 		logger().println("Using authentication: " + authenticator.getKeyName());
-		return authenticator.authenticate(clientBuilder, context, httpRequestBase, logger());
+		authenticator.authenticate(httpclient, context, httpRequestBase, logger());
+	}
+
+	private boolean isRejected(ResponseContentSupplier response) {
+		return authenticator != null && (response.getStatus() == 401 || response.getStatus() == 403);
+	}
+
+	// the spill directory is in the build directory on the controller; a request running on an agent gets it as a
+	// remote path which agents may not write to, so it keeps the body in memory and the controller spills it once
+	// the response is back, see ResponseContentSupplier#spill(FilePath)
+	private FilePath localSpillDirectory() {
+		return spillDirectory != null && spillDirectory.isRemote() ? null : spillDirectory;
 	}
 
 	private ResponseContentSupplier executeRequest(
@@ -377,55 +582,64 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		try {
 			final HttpResponse response = clientUtil.execute(httpclient, context, httpRequestBase, logger());
 			// The HttpEntity is consumed by the ResponseContentSupplier
-			responseContentSupplier = new ResponseContentSupplier(responseHandle, response);
-		} catch (UnknownHostException uhe) {
-			logger().println("Treating UnknownHostException(" + uhe.getMessage() + ") as 404 Not Found");
-			responseContentSupplier = new ResponseContentSupplier("UnknownHostException as 404 Not Found", 404);
-		} catch (SocketTimeoutException | ConnectException ce) {
-			logger().println("Treating " + ce.getClass() + "(" + ce.getMessage() + ") as 408 Request Timeout");
-			responseContentSupplier = new ResponseContentSupplier(ce.getClass() + "(" + ce.getMessage() + ") as 408 Request Timeout", 408);
+			responseContentSupplier = new ResponseContentSupplier(responseHandle, response, localSpillDirectory());
+		} catch (UnknownHostException | SocketTimeoutException | ConnectException e) {
+			responseContentSupplier = toResponse(e);
 		}
 
 		return responseContentSupplier;
 	}
 
+	// connection failures reported as HTTP status, null for any other failure
+	private ResponseContentSupplier toResponse(Exception e) {
+		if (e instanceof UnknownHostException) {
+			logger().println("Treating UnknownHostException(" + e.getMessage() + ") as 404 Not Found");
+			return new ResponseContentSupplier("UnknownHostException as 404 Not Found", 404);
+		} else if (e instanceof SocketTimeoutException || e instanceof ConnectException) {
+			logger().println("Treating " + e.getClass() + "(" + e.getMessage() + ") as 408 Request Timeout");
+			return new ResponseContentSupplier(e.getClass() + "(" + e.getMessage() + ") as 408 Request Timeout", 408);
+		}
+		return null;
+	}
+
 	private void responseCodeIsValid(ResponseContentSupplier response) throws AbortException {
-		List<Range<Integer>> ranges = DescriptorImpl.parseToRange(validResponseCodes);
-		for (Range<Integer> range : ranges) {
-			if (range.contains(response.getStatus())) {
-				if (RestApiUtils.isIspwDebugMode())
-					logger().println("Success code from " + range);
-				return;
-			}
+		if (validResponseCodes.contains(response.getStatus())) {
+			if (RestApiUtils.isIspwDebugMode())
+				logger().println("Success code " + response.getStatus() + " in " + validResponseCodes);
+			return;
 		}
-		throw new AbortException("Fail: the returned code " + response.getStatus() + " is not in the accepted range: " + ranges);
+		throw new AbortException("Fail: the returned code " + response.getStatus() + " is not in the accepted range: " + validResponseCodes);
 	}
 
 	private void processResponse(ResponseContentSupplier response) throws IOException, InterruptedException {
 		
 		// logs
 		if (consoleLogResponseBody) {
-			logger().println("Response: \n" + response.getContent());
+			logger().println("Response: \n" + response.getContentPreview());
 		}
 
+		// the expected content is one substring, as it always was, even if it spans lines
+		ContentMatcher matcher = ContentMatcher.of(Collections.singletonList(validResponseContent),
+				ContentMatcher.lines(invalidResponseContent));
+		// a body which is not read yet is checked while it is streamed to the output file
+		boolean streamed = outputFile != null && !response.isBuffered();
 		try {
 			// validate status code
 			responseCodeIsValid(response);
 
 			// validate content
-			if (!validResponseContent.isEmpty()) {
-				if (!response.getContent().contains(validResponseContent)) {
-					throw new AbortException("Fail: Response doesn't contain expected content '"
-							+ validResponseContent + "'");
+			if (matcher != null && !streamed) {
+				ContentMatcher.Scan scan = matcher.newScan();
+				InputStream in = response.getContentStream();
+				if (in != null) {
+					try (Reader reader = new InputStreamReader(in, charsetOf(response))) {
+						scan.feed(reader);
+					}
 				}
+				responseContentIsValid(scan);
 			}
 		} catch (AbortException x) {
-			if (RestApiUtils.isIspwDebugMode()) {
-				RestApiUtils.logMessageIfAny(logger(), response, true);
-			} else {
-				logger().println(x.getMessage());
-			}
-
+			logFailure(response, x);
 			throw x;
 		}
 
@@ -439,6 +653,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		if (in == null) {
 			return;
 		}
+		ContentMatcher.Scan scan = null;
+		if (streamed && matcher != null) {
+			scan = matcher.newScan();
+			in = scan.watch(in, charsetOf(response));
+		}
 		OutputStream out = null;
 		try {
 			out = outputFile.write();
@@ -449,44 +668,43 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 			}
 			in.close();
 		}
-	}
-
-	private static class NoopTrustManager extends X509ExtendedTrustManager {
-
-		@Override
-		public void checkClientTrusted(X509Certificate[] arg0, String arg1)
-				throws CertificateException {
-		}
-
-		@Override
-		public void checkServerTrusted(X509Certificate[] chain, String authType)
-				throws CertificateException {
 
+		if (streamed) {
+			response.setContentFile(outputFile);
 		}
-
-		@Override
-		public X509Certificate[] getAcceptedIssuers() {
-			return null;
+		if (scan != null) {
+			try {
+				responseContentIsValid(scan);
+			} catch (AbortException x) {
+				logFailure(response, x);
+				// as if the invalid response was never saved
+				outputFile.delete();
+				throw x;
+			}
 		}
+	}
 
-		@Override
-		public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
-				throws CertificateException {
+	private void responseContentIsValid(ContentMatcher.Scan scan) throws AbortException {
+		List<String> missing = scan.getMissing();
+		if (!missing.isEmpty()) {
+			throw new AbortException("Fail: Response doesn't contain expected content '" + missing.get(0) + "'");
 		}
-
-		@Override
-		public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
-				throws CertificateException {
+		List<String> forbidden = scan.getForbiddenFound();
+		if (!forbidden.isEmpty()) {
+			throw new AbortException("Fail: Response contains forbidden content '" + forbidden.get(0) + "'");
 		}
+	}
 
-		@Override
-		public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
-				throws CertificateException {
-		}
+	private static Charset charsetOf(ResponseContentSupplier response) {
+		return StringUtils.isEmpty(response.getCharset()) ? Charset.defaultCharset()
+				: Charset.forName(response.getCharset());
+	}
 
-		@Override
-		public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
-				throws CertificateException {
+	private void logFailure(ResponseContentSupplier response, AbortException x) {
+		if (RestApiUtils.isIspwDebugMode()) {
+			RestApiUtils.logMessageIfAny(logger(), response, true);
+		} else {
+			logger().println(x.getMessage());
 		}
 	}
 
@@ -496,10 +714,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		PrintStream logger = taskListener.getLogger();
 		IAction action = ReflectUtils.createAction(IspwCommand.GetSetTaskList, logger);
 
-		String cesUrl = RestApiUtils.getCesUrl(http.getConnectionId());
-		String cesIspwHost = RestApiUtils.getIspwHostLabel(http.getConnectionId());
+		ResolvedConnection connection = ResolvedConnection.get(http.getConnectionId());
+		String cesUrl = connection.getCesUrl();
+		String cesIspwHost = connection.getIspwHostLabel();
 
-		String cesIspwToken = RestApiUtils.getCesToken(http.getCredentialsId(), build.getParent());
+		String cesIspwToken = http.getToken(); // resolved by the step already
 		if (RestApiUtils.isIspwDebugMode())
 			logger.println("...ces.url=" + cesUrl + ", ces.ispw.host=" + cesIspwHost + ", ces.ispw.token=" + cesIspwToken);
 
@@ -514,10 +733,9 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		Item project = build.getProject();
 
 		return new HttpRequestExecution(url, HttpMode.GET, http.getIgnoreSslErrors(), http.getHttpProxy(), body, headers,
-				http.getTimeout(), http.getAuthentication(), http.getValidResponseCodes(), http.getValidResponseContent(),
-				http.getConsoleLogResponseBody(), outputFile, ResponseHandle.STRING,
-
-				project, taskListener.getLogger());
+				http.getTimeout(), http.getAuthentication(), http.getValidResponseCodeSet(), http.getValidResponseContent(),
+				http.getInvalidResponseContent(), http.getConsoleLogResponseBody(), outputFile, ResponseHandle.STRING,
+				project, taskListener.getLogger()).withSpillDirectory(ResponseBody.getSpillDirectory(build));
 	}
 
 	// create poller for rest api request step
@@ -528,10 +746,11 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		PrintStream logger = taskListener.getLogger();
 		IAction action = ReflectUtils.createAction(IspwCommand.GetSetTaskList, logger);
 
-		String cesUrl = RestApiUtils.getCesUrl(step.getConnectionId());
-		String cesIspwHost = RestApiUtils.getIspwHostLabel(step.getConnectionId());
+		ResolvedConnection connection = ResolvedConnection.get(step.getConnectionId());
+		String cesUrl = connection.getCesUrl();
+		String cesIspwHost = connection.getIspwHostLabel();
 
-		String cesIspwToken = RestApiUtils.getCesToken(step.getCredentialsId(), execution.getProject());
+		String cesIspwToken = step.getToken(); // resolved by the step already
 		if (RestApiUtils.isIspwDebugMode())
 		{
 			logger.println("...ces.url=" + cesUrl + ", ces.ispw.host=" + cesIspwHost + ", ces.ispw.token=" + cesIspwToken);
@@ -550,7 +769,24 @@ public class HttpRequestExecution extends MasterToSlaveCallable<ResponseContentS
 		return new HttpRequestExecution(url, HttpMode.GET, step.isIgnoreSslErrors(), step.getHttpProxy(), body, headers,
 				step.getTimeout(), step.getAuthentication(),
 
-				step.getValidResponseCodes(), step.getValidResponseContent(), step.getConsoleLogResponseBody(), outputFile,
-				step.getResponseHandle(), project, taskListener.getLogger());
+				step.getValidResponseCodeSet(), step.getValidResponseContent(), step.getInvalidResponseContent(),
+				step.getConsoleLogResponseBody(), outputFile,
+				ResponseHandle.STRING, project, taskListener.getLogger())
+				.withAsyncTransport(step.getAsyncTransport())
+				.withSpillDirectory(ResponseBody.getSpillDirectory(execution.getRun()));
+	}
+
+	// stands in for the build log of a shared fetch, wherever it runs
+	private static class DiscardingOutputStream extends OutputStream implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
 	}
 }
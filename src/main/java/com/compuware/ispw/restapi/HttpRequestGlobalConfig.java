@@ -11,6 +11,7 @@ import org.kohsuke.stapler.StaplerRequest;
 import com.compuware.ispw.restapi.auth.Authenticator;
 import com.compuware.ispw.restapi.auth.BasicDigestAuthentication;
 import com.compuware.ispw.restapi.auth.FormAuthentication;
+import com.compuware.ispw.restapi.auth.FormSessionCache;
 import com.compuware.ispw.restapi.util.HttpRequestNameValuePair;
 
 import hudson.Extension;
@@ -57,6 +58,8 @@ public class HttpRequestGlobalConfig extends GlobalConfiguration {
     {
         req.bindJSON(this, json);
         save();
+        // form authentications may have changed, log in again with the new settings
+        FormSessionCache.clear();
         return true;
     }
 
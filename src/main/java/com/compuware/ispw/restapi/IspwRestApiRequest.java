@@ -1,6 +1,5 @@
 package com.compuware.ispw.restapi;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -23,21 +22,20 @@ import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredenti
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import com.compuware.ispw.git.GitToIspwUtils;
 import com.compuware.ispw.model.rest.BuildResponse;
-import com.compuware.ispw.model.rest.SetInfoResponse;
 import com.compuware.ispw.model.rest.TaskInfo;
 import com.compuware.ispw.model.rest.TaskListResponse;
 import com.compuware.ispw.model.rest.TaskResponse;
 import com.compuware.ispw.restapi.action.IAction;
 import com.compuware.ispw.restapi.action.IBuildAction;
-import com.compuware.ispw.restapi.action.SetOperationAction;
 import com.compuware.ispw.restapi.auth.BasicDigestAuthentication;
 import com.compuware.ispw.restapi.auth.FormAuthentication;
 import com.compuware.ispw.restapi.util.HttpClientUtil;
 import com.compuware.ispw.restapi.util.HttpRequestNameValuePair;
 import com.compuware.ispw.restapi.util.ReflectUtils;
+import com.compuware.ispw.restapi.util.ResolvedConnection;
+import com.compuware.ispw.restapi.util.ResponseCodeSet;
 import com.compuware.ispw.restapi.util.RestApiUtils;
 import com.google.common.base.Strings;
-import com.google.common.collect.Range;
 import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
@@ -75,7 +73,9 @@ public class IspwRestApiRequest extends Builder {
 	private String httpProxy = DescriptorImpl.httpProxy;
 	private Boolean passBuildParameters = DescriptorImpl.passBuildParameters;
 	private String validResponseCodes = DescriptorImpl.validResponseCodes;
+	private transient ResponseCodeSet validResponseCodeSet;
 	private String validResponseContent = DescriptorImpl.validResponseContent;
+	private String invalidResponseContent = DescriptorImpl.invalidResponseContent;
 	private MimeType acceptType = DescriptorImpl.acceptType;
 	private MimeType contentType = DescriptorImpl.contentType;
 	private String outputFile = DescriptorImpl.outputFile;
@@ -164,10 +164,43 @@ public class IspwRestApiRequest extends Builder {
 		return validResponseCodes;
 	}
 
+	@DataBoundSetter
+	public void setValidResponseCodes(String validResponseCodes) {
+		// parsed right away, so a wrong expression fails the configuration instead of the first response
+		String codes = StringUtils.defaultIfBlank(validResponseCodes, DescriptorImpl.validResponseCodes);
+		this.validResponseCodeSet = ResponseCodeSet.of(codes);
+		this.validResponseCodes = codes;
+	}
+
+	/**
+	 * @return the accepted response codes, parsed once
+	 */
+	public ResponseCodeSet getValidResponseCodeSet() {
+		if (validResponseCodeSet == null) {
+			validResponseCodeSet = ResponseCodeSet.of(
+					StringUtils.defaultIfBlank(validResponseCodes, DescriptorImpl.validResponseCodes));
+		}
+		return validResponseCodeSet;
+	}
+
 	public String getValidResponseContent() {
 		return validResponseContent;
 	}
 
+	@DataBoundSetter
+	public void setValidResponseContent(String validResponseContent) {
+		this.validResponseContent = validResponseContent;
+	}
+
+	public String getInvalidResponseContent() {
+		return invalidResponseContent;
+	}
+
+	@DataBoundSetter
+	public void setInvalidResponseContent(String invalidResponseContent) {
+		this.invalidResponseContent = invalidResponseContent;
+	}
+
 	public MimeType getAcceptType() {
 		return acceptType;
 	}
@@ -337,20 +370,20 @@ public class IspwRestApiRequest extends Builder {
 			logger.println("...getting buildTag=" + buildTag + ", webhookToken=" + webhookToken);
 
 		IAction action = ReflectUtils.createAction(ispwAction, logger);
-		httpMode = action.getHttpMode();
-		
 		if (!ReflectUtils.isActionInstantiated(action))
 		{
 			logger.println("Action:" + ispwAction
 					+ " is not implemented, please make sure you have the correct ISPW action name");
 			return false;
 		}
+		httpMode = action.getHttpMode();
 
 		if (RestApiUtils.isIspwDebugMode())
 			logger.println("...ispwAction=" + ispwAction + ", httpMode=" + httpMode);
 
-		String cesUrl = RestApiUtils.getCesUrl(connectionId);
-		String cesIspwHost = RestApiUtils.getIspwHostLabel(connectionId);
+		ResolvedConnection connection = ResolvedConnection.get(connectionId);
+		String cesUrl = connection.getCesUrl();
+		String cesIspwHost = connection.getIspwHostLabel();
 
 		String cesIspwToken = RestApiUtils.getCesToken(credentialsId, build.getParent());
 
@@ -425,9 +458,11 @@ public class IspwRestApiRequest extends Builder {
 		
 		String responseJson = supplier.getContent();
 		if (RestApiUtils.isIspwDebugMode())
-			logger.println("responseJson=" + responseJson);
+			logger.println("responseJson=" + supplier.getContentPreview());
 
 		Object respObject = action.endLog(logger, ispwRequestBean, responseJson);
+		// the response is not returned from a freestyle build
+		supplier.discard();
 		logger.println("ISPW Operation Complete");
 		
 		if(skipWaitingForSet) {
@@ -449,67 +484,21 @@ public class IspwRestApiRequest extends Builder {
 			}
 			if (StringUtils.isNotBlank(setId) && (respObject instanceof TaskResponse || respObject instanceof BuildResponse))
 			{
-				HashSet<String> set = new HashSet<String>();
-
-				int i = 0;
-				boolean isSetHeld = false;
-				for (; i < 60; i++) {
-					Thread.sleep(Constants.POLLING_INTERVAL);
-					HttpRequestExecution poller =
-							HttpRequestExecution.createPoller(setId, this, envVars,
-									build, listener);
-					
-					ResponseContentSupplier pollerSupplier = channel.call(poller);
-					String pollingJson = pollerSupplier.getContent();
-
-					JsonProcessor jsonProcessor = new JsonProcessor();
-					SetInfoResponse setInfoResp =
-							jsonProcessor.parse(pollingJson, SetInfoResponse.class);
-					String setState = StringUtils.trimToEmpty(setInfoResp.getState());
-					if (!set.contains(setState)) {
-						logger.println("Set " + setInfoResp.getSetid() + " status - " + setState);
-						set.add(setState);
-
-						if (setState.equals(Constants.SET_STATE_CLOSED) || setState.equals(Constants.SET_STATE_COMPLETE)
-								|| setState.equals(Constants.SET_STATE_WAITING_APPROVAL)) {
-							logger.println("Action " + ispwAction + " completed");
-							break;
-						}
-						else if (Constants.SET_STATE_FAILED.equalsIgnoreCase(setState))
-						{
-							throw new AbortException("Set ID " + setId + " Failed for action "
-									+ ispwAction);
-						}
-						else if (Constants.SET_STATE_TERMINATED.equalsIgnoreCase(setState)
-								&& SetOperationAction.SET_ACTION_TERMINATE.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-						{
-							logger.println("Set " + setId + " successfully terminated");
-							break;
-						}
-						else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
-								&& SetOperationAction.SET_ACTION_HOLD.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-						{
-							logger.println("Set " + setId + " successfully held");
-							isSetHeld = true;
-							break;
-						}
-						else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
-								&& SetOperationAction.SET_ACTION_UNLOCK.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-						{
-							logger.println("Set " + setId + " successfully unlocked.  Set is currently held.");
-							break;
-						}
-						else if ((Constants.SET_STATE_RELEASED.equalsIgnoreCase(setState)
-								|| Constants.SET_STATE_WAITING_LOCK.equalsIgnoreCase(setState))
-								&& SetOperationAction.SET_ACTION_RELEASE.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-						{
-							logger.println("Set " + setId + " successfully released");
-							break;
-						}
-					}
+				HttpRequestExecution poller =
+						HttpRequestExecution.createPoller(setId, this, envVars, build, listener);
+				SetStatusWaiter waiter = new SetStatusWaiter(logger, setId, ispwAction,
+						ispwRequestBean.getIspwContextPathBean().getApplication(),
+						ispwRequestBean.getIspwContextPathBean().getAction(), true);
+
+				SetStatusWaiter.Outcome outcome = waiter.await(poller, channel);
+				if (outcome == SetStatusWaiter.Outcome.FAILED)
+				{
+					throw new AbortException("Set ID " + setId + " Failed for action "
+							+ ispwAction);
 				}
+				boolean isSetHeld = outcome == SetStatusWaiter.Outcome.HELD;
 				
-				if (i == 60) {
+				if (outcome == SetStatusWaiter.Outcome.TIMED_OUT) {
 					logger.println("Warn - max timeout reached");
 					return true;
 				}
@@ -540,6 +529,7 @@ public class IspwRestApiRequest extends Builder {
 
 			JsonProcessor jsonProcessor = new JsonProcessor();
 			TaskListResponse taskListResp = jsonProcessor.parse(pollingJson, TaskListResponse.class);
+			pollerSupplier.discard();
 			BuildResponse buildResponse = (BuildResponse) respObject;
 
 			if (buildResponse.getTasksBuilt().size() == 1)
@@ -603,6 +593,7 @@ public class IspwRestApiRequest extends Builder {
 		public static final Boolean passBuildParameters = false;
 		public static final String validResponseCodes = "100:399";
 		public static final String validResponseContent = "";
+		public static final String invalidResponseContent = "";
 		public static final MimeType acceptType = MimeType.NOT_SET;
 		public static final MimeType contentType = MimeType.NOT_SET;
 		public static final String outputFile = "";
@@ -706,38 +697,6 @@ public class IspwRestApiRequest extends Builder {
 			return items;
 		}
 
-		public static List<Range<Integer>> parseToRange(String value) {
-			List<Range<Integer>> validRanges = new ArrayList<Range<Integer>>();
-
-			String[] codes = value.split(",");
-			for (String code : codes) {
-				String[] fromTo = code.trim().split(":");
-				checkArgument(fromTo.length <= 2,
-						"Code %s should be an interval from:to or a single value", code);
-
-				Integer from;
-				try {
-					from = Integer.parseInt(fromTo[0]);
-				} catch (NumberFormatException nfe) {
-					throw new IllegalArgumentException("Invalid number " + fromTo[0]);
-				}
-
-				Integer to = from;
-				if (fromTo.length != 1) {
-					try {
-						to = Integer.parseInt(fromTo[1]);
-					} catch (NumberFormatException nfe) {
-						throw new IllegalArgumentException("Invalid number " + fromTo[1]);
-					}
-				}
-
-				checkArgument(from <= to, "Interval %s should be FROM less than TO", code);
-				validRanges.add(Range.closed(from, to));
-			}
-
-			return validRanges;
-		}
-
 		public FormValidation doCheckValidResponseCodes(@QueryParameter String value) {
 			return checkValidResponseCodes(value);
 		}
@@ -748,7 +707,7 @@ public class IspwRestApiRequest extends Builder {
 			}
 
 			try {
-				parseToRange(value);
+				ResponseCodeSet.parse(value);
 			} catch (IllegalArgumentException iae) {
 				return FormValidation
 						.error("Response codes expected is wrong. " + iae.getMessage());
@@ -8,12 +8,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
 import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
-import org.jenkinsci.plugins.workflow.steps.AbstractSynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
 import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -21,15 +24,16 @@ import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import com.compuware.ispw.git.GitToIspwUtils;
 import com.compuware.ispw.model.rest.BuildResponse;
-import com.compuware.ispw.model.rest.SetInfoResponse;
 import com.compuware.ispw.model.rest.TaskInfo;
 import com.compuware.ispw.model.rest.TaskListResponse;
 import com.compuware.ispw.model.rest.TaskResponse;
 import com.compuware.ispw.restapi.action.IAction;
 import com.compuware.ispw.restapi.action.IBuildAction;
-import com.compuware.ispw.restapi.action.SetOperationAction;
 import com.compuware.ispw.restapi.util.HttpRequestNameValuePair;
 import com.compuware.ispw.restapi.util.ReflectUtils;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
+import com.compuware.ispw.restapi.util.ResolvedConnection;
+import com.compuware.ispw.restapi.util.ResponseCodeSet;
 import com.compuware.ispw.restapi.util.RestApiUtils;
 import hudson.AbortException;
 import hudson.EnvVars;
@@ -57,7 +61,9 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 	private HttpMode httpMode = DescriptorImpl.httpMode;
 	private String httpProxy = DescriptorImpl.httpProxy;
 	private String validResponseCodes = DescriptorImpl.validResponseCodes;
+	private transient ResponseCodeSet validResponseCodeSet;
 	private String validResponseContent = DescriptorImpl.validResponseContent;
+	private String invalidResponseContent = DescriptorImpl.invalidResponseContent;
 	private MimeType acceptType = DescriptorImpl.acceptType;
 	private MimeType contentType = DescriptorImpl.contentType;
 	private Integer timeout = DescriptorImpl.timeout;
@@ -75,6 +81,9 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 	private String ispwRequestBody = DescriptorImpl.ispwRequestBody;
 	private Boolean consoleLogResponseBody = DescriptorImpl.consoleLogResponseBody;
 	private Boolean skipWaitingForSet = DescriptorImpl.skipWaitingForSet;
+	private Boolean webhookFirst = DescriptorImpl.webhookFirst;
+	private Integer webhookSilenceSeconds = DescriptorImpl.webhookSilenceSeconds;
+	private Boolean asyncTransport = DescriptorImpl.asyncTransport;
 	
     @DataBoundConstructor
     public IspwRestApiRequestStep() {
@@ -142,11 +151,44 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
     public String getValidResponseCodes() {
         return validResponseCodes;
     }
+
+	@DataBoundSetter
+	public void setValidResponseCodes(String validResponseCodes) {
+		// parsed right away, so a wrong expression fails the configuration instead of the first response
+		String codes = StringUtils.defaultIfBlank(validResponseCodes, DescriptorImpl.validResponseCodes);
+		this.validResponseCodeSet = ResponseCodeSet.of(codes);
+		this.validResponseCodes = codes;
+	}
+
+	/**
+	 * @return the accepted response codes, parsed once
+	 */
+	public ResponseCodeSet getValidResponseCodeSet() {
+		if (validResponseCodeSet == null) {
+			validResponseCodeSet = ResponseCodeSet.of(
+					StringUtils.defaultIfBlank(validResponseCodes, DescriptorImpl.validResponseCodes));
+		}
+		return validResponseCodeSet;
+	}
     
     public String getValidResponseContent() {
         return validResponseContent;
     }
 
+	@DataBoundSetter
+	public void setValidResponseContent(String validResponseContent) {
+		this.validResponseContent = validResponseContent;
+	}
+
+	public String getInvalidResponseContent() {
+		return invalidResponseContent;
+	}
+
+	@DataBoundSetter
+	public void setInvalidResponseContent(String invalidResponseContent) {
+		this.invalidResponseContent = invalidResponseContent;
+	}
+
     public MimeType getAcceptType() {
         return acceptType;
     }
@@ -167,6 +209,33 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 	public void setSkipWaitingForSet(Boolean skipWaitingForSet) {
 		this.skipWaitingForSet = skipWaitingForSet;
 	}
+
+	public Boolean getWebhookFirst() {
+		return webhookFirst;
+	}
+
+	@DataBoundSetter
+	public void setWebhookFirst(Boolean webhookFirst) {
+		this.webhookFirst = webhookFirst;
+	}
+
+	public Integer getWebhookSilenceSeconds() {
+		return webhookSilenceSeconds;
+	}
+
+	@DataBoundSetter
+	public void setWebhookSilenceSeconds(Integer webhookSilenceSeconds) {
+		this.webhookSilenceSeconds = webhookSilenceSeconds;
+	}
+
+	public Boolean getAsyncTransport() {
+		return asyncTransport;
+	}
+
+	@DataBoundSetter
+	public void setAsyncTransport(Boolean asyncTransport) {
+		this.asyncTransport = asyncTransport;
+	}
     
     @DataBoundSetter
     public void setConsoleLogResponseBody(Boolean consoleLogResponseBody) {
@@ -233,6 +302,8 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 				IspwRestApiRequest.DescriptorImpl.validResponseCodes;
 		public static final String validResponseContent =
 				IspwRestApiRequest.DescriptorImpl.validResponseContent;
+		public static final String invalidResponseContent =
+				IspwRestApiRequest.DescriptorImpl.invalidResponseContent;
 		public static final MimeType acceptType = IspwRestApiRequest.DescriptorImpl.acceptType;
 		public static final MimeType contentType = IspwRestApiRequest.DescriptorImpl.contentType;
 		public static final int timeout = IspwRestApiRequest.DescriptorImpl.timeout;
@@ -262,6 +333,9 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 		public static final Boolean consoleLogResponseBody =
 				IspwRestApiRequest.DescriptorImpl.consoleLogResponseBody;
 		public static final Boolean skipWaitingForSet = false;
+		public static final Boolean webhookFirst = false;
+		public static final Integer webhookSilenceSeconds = 120;
+		public static final Boolean asyncTransport = false;
 		
         public DescriptorImpl() {
             super(Execution.class);
@@ -326,7 +400,7 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 
 	}
 
-    public static final class Execution extends AbstractSynchronousNonBlockingStepExecution<ResponseContentSupplier> {
+    public static final class Execution extends AbstractStepExecutionImpl {
 
         @Inject
         private transient IspwRestApiRequestStep step;
@@ -336,22 +410,141 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 		@StepContextParameter
 		private transient TaskListener listener;
 
+		// the stage running right now, cancelled when the step is stopped
+		private transient volatile CompletableFuture<?> current;
+		private transient volatile boolean stopped;
+
+		/**
+		 * The ISPW operation ready to be sent
+		 */
+		private static class Prepared
+		{
+			private final HttpRequestExecution exec;
+			private final IAction action;
+			private final IspwRequestBean ispwRequestBean;
+			private final WebhookToken webhookToken;
+			private final WebhookToken callbackToken;
+
+			private Prepared(HttpRequestExecution exec, IAction action, IspwRequestBean ispwRequestBean,
+					WebhookToken webhookToken, WebhookToken callbackToken)
+			{
+				this.exec = exec;
+				this.action = action;
+				this.ispwRequestBean = ispwRequestBean;
+				this.webhookToken = webhookToken;
+				this.callbackToken = callbackToken;
+			}
+		}
+
+		/**
+		 * What the ISPW operation returned and how to wait for its set
+		 */
+		private static class Submission
+		{
+			private final ResponseContentSupplier supplier;
+			private final Object respObject;
+			private final String setId;
+			private final IspwRequestBean ispwRequestBean;
+			private final WebhookToken callbackToken;
+
+			private Submission(ResponseContentSupplier supplier, Object respObject, String setId,
+					IspwRequestBean ispwRequestBean, WebhookToken callbackToken)
+			{
+				this.supplier = supplier;
+				this.respObject = respObject;
+				this.setId = setId;
+				this.ispwRequestBean = ispwRequestBean;
+				this.callbackToken = callbackToken;
+			}
+		}
+
 		public ResponseContentSupplier runExec(HttpRequestExecution exec) throws InterruptedException, IOException {
 			Launcher launcher = getContext().get(Launcher.class);
 			ResponseContentSupplier supplier = null;
 			if (launcher != null) {
 				VirtualChannel channel = launcher.getChannel();
-				if (channel != null)
+				if (channel != null) {
 					supplier = channel.call(exec);
+					// the agent cannot write to the build directory, the body comes back in memory
+					supplier.spill(ResponseBody.getSpillDirectory(getRun()));
+				}
 			} else {
 				supplier = exec.call();
 			}
 
 			return supplier;
 		}
-		
+
+		// the channel requests of this step run on, null to run them on the controller
+		private VirtualChannel getChannel() throws InterruptedException, IOException {
+			Launcher launcher = getContext().get(Launcher.class);
+			return launcher != null ? launcher.getChannel() : null;
+		}
+
+		// send a request on the non-blocking transport if possible, else on a request thread
+		private CompletableFuture<ResponseContentSupplier> send(HttpRequestExecution exec) {
+			try {
+				if (exec.isAsync(getChannel())) {
+					return exec.callAsync();
+				}
+			} catch (IOException | InterruptedException x) {
+				CompletableFuture<ResponseContentSupplier> failed = new CompletableFuture<>();
+				failed.completeExceptionally(x);
+				return failed;
+			}
+			return StepExecutors.supply(() -> runExec(exec));
+		}
+
+		/**
+		 * Runs the step without holding a thread while it waits: requests run on the shared request threads or on the
+		 * non-blocking transport, the set is polled on the agent in one remoting call or by the set status monitor on
+		 * the controller, and the step completes from whichever thread finishes the last stage.
+		 */
 		@Override
-		protected ResponseContentSupplier run() throws Exception {
+		public boolean start() throws Exception {
+			stage(StepExecutors.supply(this::prepare))
+					.thenCompose(prepared -> stage(send(prepared.exec)).thenApply(supplier -> evaluate(prepared, supplier)))
+					.thenCompose(this::awaitSet)
+					.whenComplete((supplier, x) -> {
+						if (stopped) {
+							return;
+						}
+						if (x != null) {
+							getContext().onFailure(x instanceof CompletionException && x.getCause() != null
+									? x.getCause() : x);
+						} else {
+							getContext().onSuccess(supplier);
+						}
+					});
+			return false;
+		}
+
+		@Override
+		public void stop(@Nonnull Throwable cause) throws Exception {
+			stopped = true;
+			CompletableFuture<?> stage = current;
+			if (stage != null) {
+				stage.cancel(true);
+			}
+			getContext().onFailure(cause);
+		}
+
+		@Override
+		public void onResume() {
+			getContext().onFailure(new AbortException(
+					"The ISPW operation cannot be resumed after a restart of Jenkins, check the status of the set in ISPW"));
+		}
+
+		private <T> CompletableFuture<T> stage(CompletableFuture<T> stage) {
+			current = stage;
+			if (stopped) {
+				stage.cancel(true);
+			}
+			return stage;
+		}
+
+		// build the ISPW operation, on a request thread
+		private Prepared prepare() throws Exception {
 			PrintStream logger = listener.getLogger();
 
 			EnvVars envVars = getContext().get(hudson.EnvVars.class);
@@ -363,9 +556,21 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 			if(RestApiUtils.isIspwDebugMode())
 				logger.println("...getting buildTag=" + buildTag + ", webhookToken=" + webhookToken);
 
+			// webhook first: CES calls back on a token of this step when the set completes, polling is the fallback
+			WebhookToken callbackToken = null;
+			String ispwRequestBody = step.ispwRequestBody;
+			if (webhookToken == null && Boolean.TRUE.equals(step.webhookFirst) && !step.skipWaitingForSet)
+			{
+				callbackToken = RegisterWebhookExecution.createWebhookToken(envVars);
+				webhookToken = callbackToken;
+				if (!RequestBodyTokenizer.hasEvents(ispwRequestBody))
+				{
+					ispwRequestBody = StringUtils.defaultString(ispwRequestBody) + "\nevents.name=Completed\nevents.body="
+							+ step.ispwAction + "\n";
+				}
+			}
+
 			IAction action = ReflectUtils.createAction(step.ispwAction, logger);
-			step.httpMode = action.getHttpMode();
-			
 			if (!ReflectUtils.isActionInstantiated(action))
 			{
 				String errorMsg =
@@ -375,12 +580,14 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 				logger.println(errorMsg);
 				throw new IllegalStateException(new Exception(errorMsg));
 			}
+			step.httpMode = action.getHttpMode();
 			
 			if(RestApiUtils.isIspwDebugMode())
 				logger.println("ispwAction=" + step.ispwAction + ", httpMode=" + step.httpMode);
 
-			String cesUrl = RestApiUtils.getCesUrl(step.connectionId);
-			String cesIspwHost = RestApiUtils.getIspwHostLabel(step.connectionId);
+			ResolvedConnection connection = ResolvedConnection.get(step.connectionId);
+			String cesUrl = connection.getCesUrl();
+			String cesIspwHost = connection.getIspwHostLabel();
 
 			String cesIspwToken = RestApiUtils.getCesToken(step.credentialsId, run.getParent());
 
@@ -393,12 +600,12 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 			{
 				FilePath buildParmPath = GitToIspwUtils.getFilePathInVirtualWorkspace(envVars, IBuildAction.BUILD_PARAM_FILE_NAME);
 				
-				ispwRequestBean = ((IBuildAction) action).getIspwRequestBean(cesIspwHost, step.ispwRequestBody, webhookToken,
+				ispwRequestBean = ((IBuildAction) action).getIspwRequestBean(cesIspwHost, ispwRequestBody, webhookToken,
 						buildParmPath);
 			}
 			else
 			{
-				ispwRequestBean = action.getIspwRequestBean(cesIspwHost, step.ispwRequestBody, webhookToken);
+				ispwRequestBean = action.getIspwRequestBean(cesIspwHost, ispwRequestBody, webhookToken);
 			}
 
 			if (RestApiUtils.isIspwDebugMode())
@@ -440,11 +647,20 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 			HttpRequestExecution exec =
 					HttpRequestExecution.from(step, listener, this);
 
-			ResponseContentSupplier supplier = runExec(exec);
-			
+			return new Prepared(exec, action, ispwRequestBean, webhookToken, callbackToken);
+		}
+
+		// find the set to wait for in the response of the ISPW operation
+		private Submission evaluate(Prepared prepared, ResponseContentSupplier supplier) {
+			PrintStream logger = listener.getLogger();
+			IAction action = prepared.action;
+			IspwRequestBean ispwRequestBean = prepared.ispwRequestBean;
+			WebhookToken webhookToken = prepared.webhookToken;
+			WebhookToken callbackToken = prepared.callbackToken;
+
 			String responseJson = supplier.getContent();
 			if (RestApiUtils.isIspwDebugMode())
-				logger.println("responseJson=" + responseJson);
+				logger.println("responseJson=" + supplier.getContentPreview());
 
 			Object respObject = action.endLog(logger, ispwRequestBean, responseJson);
 			logger.println("ISPW Operation Complete");
@@ -452,10 +668,10 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 			if(step.skipWaitingForSet) {
 				logger.println("Skip waiting for the completion of the set for this job...");
 			}
-			
-			// polling status if no webhook
-			if (webhookToken == null && !step.skipWaitingForSet) {
-				String setId = StringUtils.EMPTY;
+
+			// polling status if no webhook, or as the fallback of the webhook of this step
+			String setId = StringUtils.EMPTY;
+			if ((webhookToken == null || callbackToken != null) && !step.skipWaitingForSet) {
 				if (respObject instanceof TaskResponse)
 				{
 					TaskResponse taskResp = (TaskResponse) respObject;
@@ -466,96 +682,119 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 					BuildResponse buildResp = (BuildResponse) respObject;
 					setId = buildResp.getSetId();
 				}
-				if (StringUtils.isNotBlank(setId)
-						&& (respObject instanceof TaskResponse || respObject instanceof BuildResponse))
+			}
+
+			return new Submission(supplier, respObject, setId, ispwRequestBean, callbackToken);
+		}
+
+		// wait for the set without holding a thread
+		private CompletableFuture<ResponseContentSupplier> awaitSet(Submission submission)
+		{
+			Object respObject = submission.respObject;
+			if (StringUtils.isBlank(submission.setId)
+					|| !(respObject instanceof TaskResponse || respObject instanceof BuildResponse))
+			{
+				return CompletableFuture.completedFuture(submission.supplier);
+			}
+
+			PrintStream logger = listener.getLogger();
+			String setId = submission.setId;
+			IspwRequestBean ispwRequestBean = submission.ispwRequestBean;
+			SetStatusWaiter waiter = new SetStatusWaiter(logger, setId, step.ispwAction,
+					ispwRequestBean.getIspwContextPathBean().getApplication(),
+					ispwRequestBean.getIspwContextPathBean().getAction(), false);
+
+			CompletableFuture<SetStatusWaiter.Outcome> outcome;
+			try
+			{
+				HttpRequestExecution poller = HttpRequestExecution.createPoller(setId, step, listener, this);
+				VirtualChannel channel = getChannel();
+				if (submission.callbackToken != null)
+				{
+					outcome = watchWebhook(submission.callbackToken, waiter, poller, channel);
+				}
+				else
 				{
-					HashSet<String> set = new HashSet<String>();
-
-					int i = 0;
-					boolean isSetHeld = false;
-					for (; i < 60; i++) {
-						Thread.sleep(Constants.POLLING_INTERVAL);
-						HttpRequestExecution poller = HttpRequestExecution
-								.createPoller(setId, step, listener, this);
-						ResponseContentSupplier pollerSupplier = runExec(poller);
-						String pollingJson = pollerSupplier.getContent();
-
-						JsonProcessor jsonProcessor = new JsonProcessor();
-						SetInfoResponse setInfoResp =
-								jsonProcessor.parse(pollingJson, SetInfoResponse.class);
-						String setState = StringUtils.trimToEmpty(setInfoResp.getState());
-						if (!set.contains(setState)) {
-							logger.println("Set " + setInfoResp.getSetid() + " status - "
-									+ setState);
-							set.add(setState);
-
-							if (setState.equals(Constants.SET_STATE_CLOSED) || setState.equals(Constants.SET_STATE_COMPLETE)) {
-								logger.println("Action " + step.ispwAction + " completed");
-								break;
-							}
-							else if (Constants.SET_STATE_FAILED.equalsIgnoreCase(setState))
-							{
-								logger.println("Set ID " + setId + " Failed for action "
-										+ ispwRequestBean.getIspwContextPathBean().getAction());
-								break;
-							}
-							else if (Constants.SET_STATE_TERMINATED.equalsIgnoreCase(setState)
-									&& SetOperationAction.SET_ACTION_TERMINATE.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-							{
-								logger.println("Set " + setId + " successfully terminated");
-								break;
-							}
-							else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
-									&& SetOperationAction.SET_ACTION_HOLD.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-							{
-								logger.println("Set " + setId + " successfully held");
-								isSetHeld = true;
-								break;
-							}
-							else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
-									&& SetOperationAction.SET_ACTION_UNLOCK.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-							{
-								logger.println("Set " + setId + " successfully unlocked.  Set is currently held.");
-								break;
-							}
-							else if ((Constants.SET_STATE_RELEASED.equalsIgnoreCase(setState)
-									|| Constants.SET_STATE_WAITING_LOCK.equalsIgnoreCase(setState))
-									&& SetOperationAction.SET_ACTION_RELEASE.equalsIgnoreCase(ispwRequestBean.getIspwContextPathBean().getAction()))
-							{
-								logger.println("Set " + setId + " successfully released");
-								break;
-							}
-							
-						}
-					}
-
-					if (i == Constants.POLLING_COUNT) {
-						logger.println("Warn - max timeout reached");
-						return supplier;
-					}
-
-					// Follow with post set execution logging for the task within the BuildResponse model
-					if (respObject instanceof BuildResponse && !isSetHeld)
-					{
-						buildActionTaskInfoLogger(setId, logger, respObject);
-					}
+					outcome = waiter.watch(poller, channel);
 				}
 			}
+			catch (IOException | InterruptedException x)
+			{
+				CompletableFuture<ResponseContentSupplier> failed = new CompletableFuture<>();
+				failed.completeExceptionally(x);
+				return failed;
+			}
+			// cancelling the outcome stops polling
+			stage(waiter.getOutcome());
 
-			return supplier;
+			return outcome.thenCompose(result -> {
+				if (result == SetStatusWaiter.Outcome.FAILED)
+				{
+					logger.println("Set ID " + setId + " Failed for action "
+							+ ispwRequestBean.getIspwContextPathBean().getAction());
+				}
+				boolean isSetHeld = result == SetStatusWaiter.Outcome.HELD;
+
+				if (result == SetStatusWaiter.Outcome.TIMED_OUT)
+				{
+					logger.println("Warn - max timeout reached");
+					return CompletableFuture.completedFuture(submission.supplier);
+				}
+
+				// Follow with post set execution logging for the task within the BuildResponse model
+				if (respObject instanceof BuildResponse && !isSetHeld)
+				{
+					return stage(StepExecutors.delay(Constants.POLLING_INTERVAL))
+							.thenCompose(v -> stage(sendTaskInfoPoll(setId)))
+							.thenApply(pollerSupplier -> {
+								buildActionTaskInfoLogger(setId, logger, respObject, pollerSupplier);
+								return submission.supplier;
+							});
+				}
+				return CompletableFuture.completedFuture(submission.supplier);
+			});
+		}
+
+		private CompletableFuture<ResponseContentSupplier> sendTaskInfoPoll(String setId)
+		{
+			try
+			{
+				return send(HttpRequestExecution.createTaskInfoPoller(setId, step, listener, this));
+			}
+			catch (AbortException x)
+			{
+				CompletableFuture<ResponseContentSupplier> failed = new CompletableFuture<>();
+				failed.completeExceptionally(x);
+				return failed;
+			}
 		}
 
-		private void buildActionTaskInfoLogger(String setId, PrintStream logger, Object respObject)
-				throws InterruptedException, IOException, RuntimeException
+		private CompletableFuture<SetStatusWaiter.Outcome> watchWebhook(WebhookToken callbackToken,
+				SetStatusWaiter waiter, HttpRequestExecution poller, VirtualChannel channel)
 		{
-			Thread.sleep(Constants.POLLING_INTERVAL);
-			HttpRequestExecution poller = HttpRequestExecution.createTaskInfoPoller(setId, step, listener, this);
+			CompletableFuture<String> callback = new CompletableFuture<>();
+			WebhookRegistry.Listener listener = callback::complete;
+			String payload = WebhookRegistry.get().register(callbackToken.getToken(), listener);
+			if (payload != null)
+			{
+				callback.complete(payload);
+			}
+			waiter.getOutcome().whenComplete((result, x) -> WebhookRegistry.get()
+					.deregister(callbackToken.getToken(), listener));
+
+			Integer silenceSeconds = step.webhookSilenceSeconds != null ? step.webhookSilenceSeconds
+					: DescriptorImpl.webhookSilenceSeconds;
+			return waiter.watchWebhook(poller, channel, callback, TimeUnit.SECONDS.toMillis(silenceSeconds));
+		}
 
-			ResponseContentSupplier pollerSupplier = runExec(poller);
+		private void buildActionTaskInfoLogger(String setId, PrintStream logger, Object respObject,
+				ResponseContentSupplier pollerSupplier) throws RuntimeException
+		{
 			String pollingJson = pollerSupplier.getContent();
 
 			JsonProcessor jsonProcessor = new JsonProcessor();
 			TaskListResponse taskListResp = jsonProcessor.parse(pollingJson, TaskListResponse.class);
+			pollerSupplier.discard();
 			BuildResponse buildResponse = (BuildResponse) respObject;
 
 			if (buildResponse.getTasksBuilt().size() == 1)
@@ -637,5 +876,10 @@ public final class IspwRestApiRequestStep extends AbstractStepImpl {
 			return run.getParent();
 		}
 
+		public Run<?, ?> getRun()
+		{
+			return run;
+		}
+
 	}
 }
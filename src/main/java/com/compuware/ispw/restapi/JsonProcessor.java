@@ -1,8 +1,9 @@
 package com.compuware.ispw.restapi;
 
-import java.io.StringWriter;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -16,35 +17,66 @@ import com.compuware.ispw.model.rest.SetInfo;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
 
 /**
  * JSON marshaller and unmarshaller
+ * <p>
+ * All instances share one mapper which is fully configured once and never modified afterwards. Readers and writers are
+ * created once per class and cached, so the JAXB introspection and serializer lookup are paid on first use only. The
+ * mapper, readers and writers are thread-safe and this class can be used concurrently.
  * 
  * @author Sam Zhou
  */
 public class JsonProcessor {
 
 	private static Logger logger = Logger.getLogger(JsonProcessor.class);
-	
+
+	private static final ObjectMapper mapper = createMapper();
+
+	private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+	private static ObjectMapper createMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+
+		mapper.setSerializationInclusion(Include.NON_NULL);
+		mapper.enable(SerializationFeature.INDENT_OUTPUT);
+		AnnotationIntrospector introspector =
+				new JaxbAnnotationIntrospector(mapper.getTypeFactory());
+		mapper.setAnnotationIntrospector(introspector);
+
+		return mapper;
+	}
+
+	static ObjectReader readerFor(Class<?> clazz) {
+		ObjectReader reader = readers.get(clazz);
+		if (reader == null) {
+			reader = readers.computeIfAbsent(clazz, mapper::readerFor);
+		}
+		return reader;
+	}
+
+	static ObjectWriter writerFor(Class<?> clazz) {
+		ObjectWriter writer = writers.get(clazz);
+		if (writer == null) {
+			writer = writers.computeIfAbsent(clazz, mapper::writerFor);
+		}
+		return writer;
+	}
+
 	public String generate(Object object) {
 		String json = "{}";
 
 		try {
-			ObjectMapper mapper = new ObjectMapper();
-
-			mapper.writerWithDefaultPrettyPrinter();
-			mapper.setSerializationInclusion(Include.NON_NULL);
-			mapper.enable(SerializationFeature.INDENT_OUTPUT);
-			AnnotationIntrospector introspector =
-					new JaxbAnnotationIntrospector(mapper.getTypeFactory());
-			mapper.setAnnotationIntrospector(introspector);
-
-			StringWriter stringWriter = new StringWriter();
-			mapper.writeValue(stringWriter, object);
-			
-			json = stringWriter.toString();			
+			if (object == null) {
+				json = mapper.writeValueAsString(null);
+			} else {
+				json = writerFor(object.getClass()).writeValueAsString(object);
+			}
 		} catch (Exception x) {
 			logger.error(x.getMessage(), x);
 		}
@@ -55,16 +87,7 @@ public class JsonProcessor {
 		T object = null;
 
 		try {
-			ObjectMapper mapper = new ObjectMapper();
-
-			mapper.writerWithDefaultPrettyPrinter();
-			mapper.setSerializationInclusion(Include.NON_NULL);
-			mapper.enable(SerializationFeature.INDENT_OUTPUT);
-			AnnotationIntrospector introspector =
-					new JaxbAnnotationIntrospector(mapper.getTypeFactory());
-			mapper.setAnnotationIntrospector(introspector);
-
-			object = mapper.readValue(json, clazz);
+			object = readerFor(clazz).readValue(json);
 		} catch (Exception x) {
 			logger.error(x.getMessage(), x);
 		}
@@ -0,0 +1,196 @@
+package com.compuware.ispw.restapi;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import com.compuware.ispw.restapi.action.IspwCommand;
+
+/**
+ * Decides when to poll a set next and how long to wait for it at most.
+ * <p>
+ * Without history the first polls are fast and the interval then grows by half on every poll, up to the upper bound of
+ * the operation type. With an expected duration learned from earlier sets (see {@link SetDurationHistory}) the schedule
+ * does not poll before the set is likely done, then starts over with fast polls. Every delay gets some jitter, so
+ * builds started together do not poll CES in lockstep.
+ * <p>
+ * A safety poll backs up a webhook callback: it polls at the upper bound only and waits as long as the operation type
+ * allows.
+ * <p>
+ * A schedule belongs to one wait and is not thread safe.
+ */
+public class PollSchedule implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String PROPERTY_PREFIX = PollSchedule.class.getName();
+
+	static final long INITIAL_INTERVAL = Long.getLong(PROPERTY_PREFIX + ".initialIntervalMillis",
+			Constants.POLLING_INTERVAL / 2);
+	static final double BACKOFF_FACTOR = 1.5;
+	static final double JITTER = 0.2;
+
+	// the set is expected to be done once this share of its usual duration has elapsed
+	static final double ETA_SHARE = 0.8;
+	// wait up to this many times the usual duration before giving up
+	static final int ETA_TIMEOUT_FACTOR = 3;
+
+	private static final long SECOND = 1000L;
+	private static final long MINUTE = 60 * SECOND;
+
+	/**
+	 * Upper bounds of polling per kind of operation
+	 */
+	public enum OperationType {
+		/** generate, build and everything else that usually finishes within a minute */
+		GENERATE(5 * SECOND, (long) Constants.POLLING_INTERVAL * Constants.POLLING_MAX_ATTEMPTS, 30 * MINUTE),
+		/** promote, regress and set operations */
+		PROMOTE(15 * SECOND, 10 * MINUTE, 60 * MINUTE),
+		/** deploy, cancel deployment and fallback, which wait for the target environments */
+		DEPLOY(30 * SECOND, 30 * MINUTE, 120 * MINUTE);
+
+		private final long maxInterval;
+		private final long defaultTimeout;
+		private final long maxTimeout;
+
+		private OperationType(long maxInterval, long defaultTimeout, long maxTimeout) {
+			this.maxInterval = maxInterval;
+			this.defaultTimeout = defaultTimeout;
+			this.maxTimeout = maxTimeout;
+		}
+
+		public long getMaxInterval() {
+			return maxInterval;
+		}
+
+		public long getDefaultTimeout() {
+			return defaultTimeout;
+		}
+
+		public long getMaxTimeout() {
+			return maxTimeout;
+		}
+
+		/**
+		 * @param ispwAction
+		 *            the ISPW command which created the set
+		 * @return the operation type of the command
+		 */
+		public static OperationType forCommand(String ispwAction) {
+			if (IspwCommand.DeployAssignment.equals(ispwAction) || IspwCommand.DeployRelease.equals(ispwAction)
+					|| IspwCommand.CancelDeployment.equals(ispwAction)
+					|| IspwCommand.FallbackAssignment.equals(ispwAction)
+					|| IspwCommand.FallbackRelease.equals(ispwAction)) {
+				return DEPLOY;
+			} else if (IspwCommand.PromoteAssignment.equals(ispwAction)
+					|| IspwCommand.PromoteRelease.equals(ispwAction)
+					|| IspwCommand.RegressAssignment.equals(ispwAction)
+					|| IspwCommand.RegressRelease.equals(ispwAction) || IspwCommand.SetOperation.equals(ispwAction)) {
+				return PROMOTE;
+			}
+			return GENERATE;
+		}
+	}
+
+	private final OperationType type;
+	private final long expectedMillis;
+	private final long timeoutMillis;
+	private final boolean safetyPoll;
+
+	private int attempt;
+	private boolean etaReached;
+
+	/**
+	 * @param type
+	 *            the operation type
+	 * @param expectedMillis
+	 *            the usual duration of this operation, 0 or less if unknown
+	 */
+	public PollSchedule(OperationType type, long expectedMillis) {
+		this(type, expectedMillis, false);
+	}
+
+	private PollSchedule(OperationType type, long expectedMillis, boolean safetyPoll) {
+		this.type = type;
+		this.expectedMillis = Math.max(0L, expectedMillis);
+		this.etaReached = this.expectedMillis == 0L;
+		this.safetyPoll = safetyPoll;
+
+		long timeout = type.getDefaultTimeout();
+		if (safetyPoll) {
+			timeout = type.getMaxTimeout();
+		} else if (this.expectedMillis > 0L) {
+			timeout = Math.max(timeout, this.expectedMillis * ETA_TIMEOUT_FACTOR);
+		}
+		this.timeoutMillis = Math.min(timeout, type.getMaxTimeout());
+	}
+
+	/**
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @param expectedMillis
+	 *            the usual duration of this operation, 0 or less if unknown
+	 * @return a new schedule for one wait
+	 */
+	public static PollSchedule forCommand(String ispwAction, long expectedMillis) {
+		return new PollSchedule(OperationType.forCommand(ispwAction), expectedMillis);
+	}
+
+	/**
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @return a new low rate schedule backing up a webhook callback
+	 */
+	public static PollSchedule forSafetyPoll(String ispwAction) {
+		return new PollSchedule(OperationType.forCommand(ispwAction), 0L, true);
+	}
+
+	/**
+	 * @return the operation type
+	 */
+	public OperationType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the usual duration of this operation, 0 if unknown
+	 */
+	public long getExpectedMillis() {
+		return expectedMillis;
+	}
+
+	/**
+	 * @return how long to wait for the set at most
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * @param elapsedMillis
+	 *            the time since the operation was submitted
+	 * @return the delay until the next poll
+	 */
+	public long nextDelay(long elapsedMillis) {
+		long delay;
+		long eta = (long) (expectedMillis * ETA_SHARE);
+		if (safetyPoll) {
+			delay = type.getMaxInterval();
+		} else if (!etaReached && eta - elapsedMillis > INITIAL_INTERVAL) {
+			// nothing to see before the set is likely done, only check now and then
+			delay = Math.min(eta - elapsedMillis, type.getMaxInterval());
+		} else {
+			if (!etaReached) {
+				etaReached = true;
+				attempt = 0;
+			}
+			delay = backoff(attempt++);
+		}
+
+		double jitter = 1.0 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1.0);
+		return Math.max(INITIAL_INTERVAL / 2, (long) (delay * jitter));
+	}
+
+	private long backoff(int attempt) {
+		double delay = INITIAL_INTERVAL * Math.pow(BACKOFF_FACTOR, Math.min(attempt, 32));
+		return (long) Math.min(delay, type.getMaxInterval());
+	}
+}
@@ -21,6 +21,21 @@ public class RegisterWebhookExecution extends AbstractSynchronousStepExecution<W
 	@Override
 	public WebhookToken run() throws Exception {
 		EnvVars envVars = getContext().get(hudson.EnvVars.class);
+		WebhookToken webhookToken = createWebhookToken(envVars);
+
+		String buildTag = envVars.get("BUILD_TAG");
+		WebhookTokenManager.getInstance().put(buildTag, webhookToken);
+
+		if(RestApiUtils.isIspwDebugMode())
+			logger.info("...registering buildTag=" + buildTag + ", webhookToken=" + webhookToken.toString());
+
+		return webhookToken;
+	}
+
+	/**
+	 * Create a new webhook token with the URL CES calls back on
+	 */
+	static WebhookToken createWebhookToken(EnvVars envVars) throws java.net.URISyntaxException {
 		String token = java.util.UUID.randomUUID().toString();
 
 		String jenkinsUrl = envVars.get("JENKINS_URL");
@@ -32,14 +47,8 @@ public class RegisterWebhookExecution extends AbstractSynchronousStepExecution<W
 		java.net.URI relative = new java.net.URI("ispw-webhook-step/" + token);
 		java.net.URI path = baseUri.resolve(relative);
 
-		WebhookToken webhookToken = new WebhookToken(token, path.toString());
-
-		String buildTag = envVars.get("BUILD_TAG");
-		WebhookTokenManager.getInstance().put(buildTag, webhookToken);
-
-		if(RestApiUtils.isIspwDebugMode())
-			logger.info("...registering buildTag=" + buildTag + ", webhookToken=" + webhookToken.toString());
-
-		return webhookToken;
+		// the webhook only keeps payloads for tokens it handed out
+		WebhookRegistry.get().issue(token);
+		return new WebhookToken(token, path.toString());
 	}
 }
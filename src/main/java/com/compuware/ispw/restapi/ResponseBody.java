@@ -0,0 +1,244 @@
+package com.compuware.ispw.restapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+
+import hudson.FilePath;
+import hudson.model.Run;
+
+/**
+ * The body of a response. A small body is kept in memory; a body larger than {@link #SPILL_THRESHOLD} bytes is spilled
+ * to a temporary file in the build directory, so that worklists, task lists and generate listings of many megabytes
+ * neither sit on the controller heap nor end up inline in the program state of a Pipeline, which only keeps a
+ * reference to the file. A body read on an agent is spilled once it is back on the controller.
+ * <p>
+ * The content is decoded on demand, use {@link #getPreview(int)} to log a body of unknown size.
+ */
+public class ResponseBody implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String PROPERTY_PREFIX = ResponseBody.class.getName();
+
+	static final int SPILL_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + ".spillThreshold", 1024 * 1024);
+	static final int PREVIEW_CHARS = Integer.getInteger(PROPERTY_PREFIX + ".previewChars", 64 * 1024);
+
+	/**
+	 * The directory under the build directory holding spilled bodies
+	 */
+	public static final String SPILL_DIRECTORY = "ispw-responses";
+
+	private final byte[] bytes;
+	private final FilePath file;
+	private final boolean temporary;
+	private final long length;
+	private final String charset;
+
+	private ResponseBody(byte[] bytes, FilePath file, boolean temporary, long length, String charset) {
+		this.bytes = bytes;
+		this.file = file;
+		this.temporary = temporary;
+		this.length = length;
+		this.charset = charset;
+	}
+
+	/**
+	 * @param run
+	 *            the build sending the requests
+	 * @return the directory to spill the response bodies of the build to
+	 */
+	public static FilePath getSpillDirectory(Run<?, ?> run) {
+		return new FilePath(run.getRootDir()).child(SPILL_DIRECTORY);
+	}
+
+	/**
+	 * @param bytes
+	 *            the whole body
+	 * @param charset
+	 *            the charset of the body, null for the platform default
+	 * @return the body held in memory
+	 */
+	public static ResponseBody of(byte[] bytes, String charset) {
+		return new ResponseBody(bytes, null, false, bytes.length, charset);
+	}
+
+	/**
+	 * @param file
+	 *            a file holding the whole body, e.g. the output file of a step; it is never deleted
+	 * @param charset
+	 *            the charset of the body, null for the platform default
+	 * @return the body read from the file
+	 * @throws IOException
+	 *             if the file cannot be accessed
+	 * @throws InterruptedException
+	 *             if interrupted while accessing the file
+	 */
+	public static ResponseBody ofFile(FilePath file, String charset) throws IOException, InterruptedException {
+		return new ResponseBody(null, file, false, file.length(), charset);
+	}
+
+	/**
+	 * Read a body, spilling it to a temporary file once it grows larger than {@link #SPILL_THRESHOLD} bytes
+	 *
+	 * @param in
+	 *            the body, read to its end but not closed
+	 * @param charset
+	 *            the charset of the body, null for the platform default
+	 * @param spillDirectory
+	 *            the directory to spill to, null to keep any body in memory
+	 * @return the body
+	 * @throws IOException
+	 *             if the body cannot be read or spilled
+	 * @throws InterruptedException
+	 *             if interrupted while spilling
+	 */
+	public static ResponseBody read(InputStream in, String charset, FilePath spillDirectory)
+			throws IOException, InterruptedException {
+		if (spillDirectory == null) {
+			return of(ByteStreams.toByteArray(in), charset);
+		}
+
+		byte[] head = ByteStreams.toByteArray(ByteStreams.limit(in, SPILL_THRESHOLD + 1L));
+		if (head.length <= SPILL_THRESHOLD) {
+			return of(head, charset);
+		}
+
+		spillDirectory.mkdirs();
+		FilePath file = spillDirectory.createTempFile("response", ".body");
+		long length = head.length;
+		try (OutputStream out = file.write()) {
+			out.write(head);
+			length += ByteStreams.copy(in, out);
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+		return new ResponseBody(null, file, true, length, charset);
+	}
+
+	/**
+	 * @return the whole content, decoded anew on every call
+	 * @throws IOException
+	 *             if a spilled body cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while reading a spilled body
+	 */
+	public String getContent() throws IOException, InterruptedException {
+		if (bytes != null) {
+			return new String(bytes, getCharset());
+		}
+		try (Reader reader = new InputStreamReader(file.read(), getCharset())) {
+			return CharStreams.toString(reader);
+		}
+	}
+
+	/**
+	 * Spill a body read where it could not be spilled, e.g. on an agent, once it is back on the controller
+	 *
+	 * @param spillDirectory
+	 *            the directory to spill to, null to keep the body in memory
+	 * @return this body, or the same body in a temporary file if it is held in memory and larger than
+	 *         {@link #SPILL_THRESHOLD} bytes
+	 * @throws IOException
+	 *             if the body cannot be spilled
+	 * @throws InterruptedException
+	 *             if interrupted while spilling
+	 */
+	public ResponseBody spill(FilePath spillDirectory) throws IOException, InterruptedException {
+		if (bytes == null || spillDirectory == null || length <= SPILL_THRESHOLD) {
+			return this;
+		}
+
+		spillDirectory.mkdirs();
+		FilePath file = spillDirectory.createTempFile("response", ".body");
+		try (OutputStream out = file.write()) {
+			out.write(bytes);
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+		return new ResponseBody(null, file, true, length, charset);
+	}
+
+	/**
+	 * @return a new stream over the whole body, the caller closes it
+	 * @throws IOException
+	 *             if a spilled body cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while opening a spilled body
+	 */
+	public InputStream getContentStream() throws IOException, InterruptedException {
+		return bytes != null ? new ByteArrayInputStream(bytes) : file.read();
+	}
+
+	/**
+	 * @param maxChars
+	 *            the most characters to return
+	 * @return the beginning of the content, with a note of the full length if it was cut
+	 * @throws IOException
+	 *             if a spilled body cannot be read
+	 * @throws InterruptedException
+	 *             if interrupted while reading a spilled body
+	 */
+	public String getPreview(int maxChars) throws IOException, InterruptedException {
+		char[] preview = new char[maxChars + 1];
+		int read = 0;
+		try (Reader reader = new InputStreamReader(getContentStream(), getCharset())) {
+			for (int n; read < preview.length && (n = reader.read(preview, read, preview.length - read)) >= 0;) {
+				read += n;
+			}
+		}
+		if (read <= maxChars) {
+			return new String(preview, 0, read);
+		}
+		return new String(preview, 0, maxChars) + "\n... (" + length + " bytes, truncated)";
+	}
+
+	/**
+	 * @return the length of the body in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return true if the body is held in memory, false if it is read from a file
+	 */
+	public boolean isInMemory() {
+		return bytes != null;
+	}
+
+	/**
+	 * Delete the temporary file of a spilled body, the body cannot be read afterwards. Does nothing for a body held in
+	 * memory or read from a file that is not temporary.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be deleted
+	 * @throws InterruptedException
+	 *             if interrupted while deleting
+	 */
+	public void delete() throws IOException, InterruptedException {
+		if (temporary) {
+			file.delete();
+		}
+	}
+
+	private Charset getCharset() {
+		return Strings.isNullOrEmpty(charset) ? Charset.defaultCharset() : Charset.forName(charset);
+	}
+
+	@Override
+	public String toString() {
+		return bytes != null ? length + " bytes" : length + " bytes in " + file;
+	}
+}
@@ -1,11 +1,11 @@
 package com.compuware.ispw.restapi;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,14 +15,13 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
 
 import com.google.common.base.Strings;
-import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.FilePath;
 
 /**
  * @author Martin d'Anjou
@@ -38,18 +37,33 @@ public class ResponseContentSupplier implements Serializable, AutoCloseable {
 	private String charset;
 
 	private ResponseHandle responseHandle;
-	private String content;
+	// the body read from the connection, in memory or spilled to a file, decoded only once its content is asked for
+	private ResponseBody body;
+	private transient String content;
 	@SuppressFBWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
 	private transient InputStream contentStream;
-	@SuppressFBWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
-	private transient CloseableHttpClient httpclient;
 
 	public ResponseContentSupplier(String content, int status) {
+		this.responseHandle = ResponseHandle.STRING;
 		this.content = content;
+		this.body = ResponseBody.of(content.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8.name());
+		this.charset = StandardCharsets.UTF_8.name();
 		this.status = status;
 	}
 
 	public ResponseContentSupplier(ResponseHandle responseHandle, HttpResponse response) {
+		this(responseHandle, response, null);
+	}
+
+	/**
+	 * @param responseHandle
+	 *            how to handle the body
+	 * @param response
+	 *            the response
+	 * @param spillDirectory
+	 *            where a large body read for {@link ResponseHandle#STRING} is spilled to, null to keep it in memory
+	 */
+	public ResponseContentSupplier(ResponseHandle responseHandle, HttpResponse response, FilePath spillDirectory) {
 		this.status = response.getStatusLine().getStatusCode();
 		this.responseHandle = responseHandle;
 		readHeaders(response);
@@ -60,15 +74,19 @@ public class ResponseContentSupplier implements Serializable, AutoCloseable {
 			InputStream entityContent = entity != null ? entity.getContent() : null;
 
 			if (responseHandle == ResponseHandle.STRING && entityContent != null) {
-				byte[] bytes = ByteStreams.toByteArray(entityContent);
-				contentStream = new ByteArrayInputStream(bytes);
-				content = new String(bytes, Strings.isNullOrEmpty(charset) ?
-						Charset.defaultCharset().name() : charset);
+				try {
+					body = ResponseBody.read(entityContent, charset, spillDirectory);
+				} finally {
+					entityContent.close();
+				}
 			} else {
 				contentStream = entityContent;
 			}
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -89,12 +107,24 @@ public class ResponseContentSupplier implements Serializable, AutoCloseable {
 
 	@Whitelisted
 	public String getContent() {
-		if (responseHandle == ResponseHandle.STRING) {
-			return content;
-		}
 		if (content != null) {
 			return content;
 		}
+		if (body != null) {
+			try {
+				String decoded = body.getContent();
+				// a spilled body is decoded anew rather than kept on the heap
+				if (body.isInMemory()) {
+					content = decoded;
+				}
+				return decoded;
+			} catch (IOException | InterruptedException e) {
+				throw new IllegalStateException("Error reading response from " + body, e);
+			}
+		}
+		if (contentStream == null) {
+			return null;
+		}
 
 		try (InputStreamReader in = new InputStreamReader(contentStream,
 				Strings.isNullOrEmpty(charset) ? Charset.defaultCharset().name() : charset)) {
@@ -107,11 +137,87 @@ public class ResponseContentSupplier implements Serializable, AutoCloseable {
 		}
 	}
 
+	/**
+	 * @return the beginning of the content, to log a response of any size
+	 */
+	@Whitelisted
+	public String getContentPreview() {
+		if (body == null) {
+			return getContent();
+		}
+		try {
+			return body.getPreview(ResponseBody.PREVIEW_CHARS);
+		} catch (IOException | InterruptedException e) {
+			throw new IllegalStateException("Error reading response from " + body, e);
+		}
+	}
+
 	@Whitelisted
 	public InputStream getContentStream() {
+		if (body != null) {
+			try {
+				return body.getContentStream();
+			} catch (IOException | InterruptedException e) {
+				throw new IllegalStateException("Error reading response from " + body, e);
+			}
+		}
 		return contentStream;
 	}
 
+	/**
+	 * @return true if the body is already read from the connection, false if it is streamed from the connection
+	 */
+	boolean isBuffered() {
+		return body != null;
+	}
+
+	/**
+	 * The body was streamed to the given file, read the content from it from now on
+	 *
+	 * @param contentFile
+	 *            the file holding the whole body
+	 * @throws IOException
+	 *             if the file cannot be accessed
+	 * @throws InterruptedException
+	 *             if interrupted while accessing the file
+	 */
+	void setContentFile(FilePath contentFile) throws IOException, InterruptedException {
+		this.body = ResponseBody.ofFile(contentFile, charset);
+		this.contentStream = null;
+	}
+
+	/**
+	 * Spill a large body which is still in memory because it was read on an agent
+	 *
+	 * @param spillDirectory
+	 *            the directory to spill to, null to keep the body in memory
+	 * @throws IOException
+	 *             if the body cannot be spilled
+	 * @throws InterruptedException
+	 *             if interrupted while spilling
+	 */
+	void spill(FilePath spillDirectory) throws IOException, InterruptedException {
+		if (body != null) {
+			body = body.spill(spillDirectory);
+			if (!body.isInMemory()) {
+				content = null;
+			}
+		}
+	}
+
+	/**
+	 * Delete the file a large body was spilled to, once nothing reads the content any more
+	 */
+	public void discard() {
+		if (body != null) {
+			try {
+				body.delete();
+			} catch (IOException | InterruptedException e) {
+				// left in the build directory, it goes with the build
+			}
+		}
+	}
+
 	private void readCharset(HttpResponse response) {
 		Charset charset = null;
 		ContentType contentType = ContentType.get(response.getEntity());
@@ -147,15 +253,9 @@ public class ResponseContentSupplier implements Serializable, AutoCloseable {
 
 	@Override
 	public void close() throws IOException {
-		if (httpclient != null) {
-			httpclient.close();
-		}
+		// the HTTP client is pooled and shared, closing the stream hands the connection back
 		if (contentStream != null) {
 			contentStream.close();
 		}
 	}
-
-	void setHttpClient(CloseableHttpClient httpclient) {
-		this.httpclient = httpclient;
-	}
 }
@@ -0,0 +1,183 @@
+package com.compuware.ispw.restapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+
+/**
+ * How long sets usually take, per ISPW command and application. The durations are kept as exponentially weighted
+ * averages and saved in the Jenkins home, so the polling schedule of a new build starts from what earlier builds
+ * observed.
+ */
+public class SetDurationHistory implements Saveable {
+
+	private static Logger logger = Logger.getLogger(SetDurationHistory.class);
+
+	private static final String PROPERTY_PREFIX = SetDurationHistory.class.getName();
+
+	static final int MAX_ENTRIES = Integer.getInteger(PROPERTY_PREFIX + ".maxEntries", 1000);
+	// weight of the newest sample
+	static final double SMOOTHING = 0.3;
+
+	private static final String ANY_APPLICATION = "*";
+	private static final XStream2 XSTREAM2 = new XStream2();
+
+	private static volatile SetDurationHistory instance;
+
+	private Map<String, Duration> durations = new ConcurrentHashMap<>();
+	private transient XmlFile file;
+
+	/**
+	 * The average duration of one command in one application
+	 */
+	public static class Duration {
+		private long averageMillis;
+		private int samples;
+		private long lastUpdated;
+
+		public long getAverageMillis() {
+			return averageMillis;
+		}
+
+		public int getSamples() {
+			return samples;
+		}
+	}
+
+	SetDurationHistory(XmlFile file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the history, loaded from the Jenkins home on first use
+	 */
+	public static SetDurationHistory get() {
+		SetDurationHistory history = instance;
+		if (history == null) {
+			synchronized (SetDurationHistory.class) {
+				history = instance;
+				if (history == null) {
+					history = load();
+					instance = history;
+				}
+			}
+		}
+		return history;
+	}
+
+	private static SetDurationHistory load() {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		if (jenkins == null) {
+			return new SetDurationHistory(null);
+		}
+
+		XmlFile xmlFile = new XmlFile(XSTREAM2, new File(jenkins.getRootDir(), PROPERTY_PREFIX + ".xml"));
+		SetDurationHistory history = new SetDurationHistory(xmlFile);
+		if (xmlFile.exists()) {
+			try {
+				xmlFile.unmarshal(history);
+			} catch (IOException e) {
+				logger.warn("Failed to load set durations from " + xmlFile, e);
+			}
+		}
+		if (!(history.durations instanceof ConcurrentHashMap)) {
+			history.durations = new ConcurrentHashMap<>(history.durations);
+		}
+		return history;
+	}
+
+	/**
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @param application
+	 *            the application, may be blank
+	 * @return the usual duration of the command in the application, or of the command in any application if the
+	 *         application was not seen yet, 0 if unknown
+	 */
+	public long estimate(String ispwAction, String application) {
+		Duration duration = durations.get(key(ispwAction, application));
+		if (duration == null) {
+			duration = durations.get(key(ispwAction, null));
+		}
+		return duration != null ? duration.averageMillis : 0L;
+	}
+
+	/**
+	 * Add the duration of a finished set
+	 *
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @param application
+	 *            the application, may be blank
+	 * @param durationMillis
+	 *            how long the set took
+	 */
+	public void record(String ispwAction, String application, long durationMillis) {
+		if (StringUtils.isBlank(ispwAction) || durationMillis <= 0L) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		update(key(ispwAction, application), durationMillis, now);
+		if (StringUtils.isNotBlank(application)) {
+			update(key(ispwAction, null), durationMillis, now);
+		}
+
+		while (durations.size() > MAX_ENTRIES) {
+			evictOldest();
+		}
+
+		try {
+			save();
+		} catch (IOException e) {
+			logger.warn("Failed to save set durations to " + file, e);
+		}
+	}
+
+	private void update(String key, long durationMillis, long now) {
+		durations.compute(key, (k, duration) -> {
+			if (duration == null) {
+				duration = new Duration();
+				duration.averageMillis = durationMillis;
+			} else {
+				duration.averageMillis = (long) (SMOOTHING * durationMillis
+						+ (1 - SMOOTHING) * duration.averageMillis);
+			}
+			duration.samples++;
+			duration.lastUpdated = now;
+			return duration;
+		});
+	}
+
+	private void evictOldest() {
+		String oldestKey = null;
+		long oldest = Long.MAX_VALUE;
+		for (Map.Entry<String, Duration> entry : durations.entrySet()) {
+			if (entry.getValue().lastUpdated < oldest) {
+				oldest = entry.getValue().lastUpdated;
+				oldestKey = entry.getKey();
+			}
+		}
+		if (oldestKey != null) {
+			durations.remove(oldestKey);
+		}
+	}
+
+	@Override
+	public synchronized void save() throws IOException {
+		if (file != null) {
+			file.write(this);
+		}
+	}
+
+	private static String key(String ispwAction, String application) {
+		return ispwAction + "/" + (StringUtils.isBlank(application) ? ANY_APPLICATION : application.trim());
+	}
+}
@@ -0,0 +1,121 @@
+package com.compuware.ispw.restapi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import com.compuware.ispw.model.rest.SetInfoResponse;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Runs the whole wait for a set on the agent in one remoting call. The agent polls CES next to the network, feeds a
+ * local {@link SetStatusWaiter} and writes only the set state changes to the build log; the controller receives the
+ * reason the wait ended and the last set information.
+ */
+public class SetStatusAgentWaiter extends MasterToSlaveCallable<SetStatusAgentWaiter.Result, IOException> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final HttpRequestExecution poller;
+	private final String setId;
+	private final String ispwAction;
+	private final String setAction;
+	private final boolean completeOnWaitingApproval;
+	private final PollSchedule schedule;
+
+	/**
+	 * The outcome of the wait, sent back to the controller
+	 */
+	public static class Result implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SetStatusWaiter.Outcome outcome;
+		private final String setInfoJson;
+
+		private Result(SetStatusWaiter.Outcome outcome, String setInfoJson) {
+			this.outcome = outcome;
+			this.setInfoJson = setInfoJson;
+		}
+
+		/**
+		 * @return the reason the wait ended
+		 */
+		public SetStatusWaiter.Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * @return the last set information returned by CES, null if the wait timed out before the first poll
+		 */
+		public SetInfoResponse getSetInfo() {
+			return setInfoJson != null ? new JsonProcessor().parse(setInfoJson, SetInfoResponse.class) : null;
+		}
+	}
+
+	/**
+	 * @param poller
+	 *            the GetSetInfo request for the set, its build log is used for the state changes
+	 * @param setId
+	 *            the set ID
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @param setAction
+	 *            the set operation (hold, release...) if the command is a set operation
+	 * @param completeOnWaitingApproval
+	 *            true if a set waiting for approval ends the wait
+	 * @param schedule
+	 *            when to poll and how long to wait for the set at most
+	 */
+	public SetStatusAgentWaiter(HttpRequestExecution poller, String setId, String ispwAction, String setAction,
+			boolean completeOnWaitingApproval, PollSchedule schedule) {
+		this.poller = poller;
+		this.setId = setId;
+		this.ispwAction = ispwAction;
+		this.setAction = setAction;
+		this.completeOnWaitingApproval = completeOnWaitingApproval;
+		this.schedule = schedule;
+	}
+
+	@Override
+	public Result call() throws IOException {
+		SetStatusWaiter waiter = new SetStatusWaiter(poller.logger(), setId, ispwAction, null, setAction,
+				completeOnWaitingApproval);
+		JsonProcessor jsonProcessor = new JsonProcessor();
+		long start = System.currentTimeMillis();
+		long deadline = start + schedule.getTimeoutMillis();
+		String setInfoJson = null;
+
+		try {
+			while (true) {
+				long now = System.currentTimeMillis();
+				long delay = Math.min(schedule.nextDelay(now - start), deadline - now);
+				if (delay > 0) {
+					Thread.sleep(delay);
+				}
+				if (System.currentTimeMillis() >= deadline) {
+					waiter.onTimeout();
+					break;
+				}
+
+				String json = poller.call().getContent();
+				SetInfoResponse setInfoResp = jsonProcessor.parse(json, SetInfoResponse.class);
+				if (setInfoResp == null) {
+					throw new IOException("Invalid set information returned by " + poller.getUrl());
+				}
+
+				setInfoJson = json;
+				if (waiter.onSetInfo(setInfoResp)) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			// the build was aborted, the controller interrupts the remote call
+			Thread.currentThread().interrupt();
+			InterruptedIOException x = new InterruptedIOException("Stopped waiting for set " + setId);
+			x.initCause(e);
+			throw x;
+		}
+
+		return new Result(waiter.getOutcome().getNow(SetStatusWaiter.Outcome.TIMED_OUT), setInfoJson);
+	}
+}
@@ -0,0 +1,327 @@
+package com.compuware.ispw.restapi;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.log4j.Logger;
+import com.compuware.ispw.model.rest.SetInfoResponse;
+import hudson.init.Terminator;
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Controller wide monitor of ISPW set status. Builds register the set they are waiting for together with a callback
+ * instead of holding a thread in a sleep loop. One scheduler periodically polls all registered sets; builds waiting
+ * for the same set with the same credentials share a single GetSetInfo call per polling cycle. The call is sent by one
+ * of the builds, each build logs, checks and saves the response with its own request. Pollers on the non-blocking
+ * transport only take a polling thread to send the request.
+ */
+public class SetStatusMonitor {
+
+	private static Logger logger = Logger.getLogger(SetStatusMonitor.class);
+
+	private static final String PROPERTY_PREFIX = SetStatusMonitor.class.getName();
+
+	static final long TICK_MILLIS = Long.getLong(PROPERTY_PREFIX + ".tickMillis", 250L);
+	static final int POLLING_THREADS = Integer.getInteger(PROPERTY_PREFIX + ".pollingThreads", 4);
+
+	private static final SetStatusMonitor instance = new SetStatusMonitor();
+
+	private final ConcurrentMap<String, MonitoredSet> sets = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService pollers;
+
+	/**
+	 * Receives the set information of a monitored set
+	 */
+	public interface Callback {
+
+		/**
+		 * Called with each set information returned by CES
+		 *
+		 * @param setInfo
+		 *            the set information
+		 * @return true if the set reached the state the caller waits for and no more updates are needed
+		 */
+		boolean onSetInfo(SetInfoResponse setInfo);
+
+		/**
+		 * Called when polling failed, no more updates will follow
+		 *
+		 * @param cause
+		 *            the failure
+		 */
+		void onError(Throwable cause);
+
+		/**
+		 * Called when the waiting time elapsed, no more updates will follow
+		 */
+		void onTimeout();
+	}
+
+	/**
+	 * Handle returned on registration, used to stop waiting
+	 */
+	public interface Registration {
+
+		void cancel();
+
+		/**
+		 * Poll the set on the next tick instead of waiting for its schedule, e.g. when CES reports a change
+		 */
+		void pollNow();
+	}
+
+	private SetStatusMonitor() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(
+				new NamingThreadFactory(new DaemonThreadFactory(), "ISPW set status monitor"));
+		pollers = Executors.newFixedThreadPool(POLLING_THREADS,
+				new NamingThreadFactory(new DaemonThreadFactory(), "ISPW set status poller"));
+		scheduler.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public static SetStatusMonitor get() {
+		return instance;
+	}
+
+	/**
+	 * Start monitoring a set
+	 *
+	 * @param poller
+	 *            the GetSetInfo request for the set
+	 * @param channel
+	 *            the channel to run the request on when this build sends it for all builds waiting for the set, null to
+	 *            run it on the controller
+	 * @param schedule
+	 *            when to poll the set and how long the callback waits for it at most
+	 * @param callback
+	 *            the callback to notify
+	 * @return the registration, cancel it to stop waiting
+	 */
+	public Registration watch(HttpRequestExecution poller, VirtualChannel channel, PollSchedule schedule,
+			Callback callback) {
+		String key = poller.getPollKey();
+		Waiter waiter = new Waiter(poller, channel, callback, System.currentTimeMillis() + schedule.getTimeoutMillis());
+
+		sets.compute(key, (k, monitoredSet) -> {
+			if (monitoredSet == null) {
+				// builds joining later share the schedule of the first one
+				monitoredSet = new MonitoredSet(k, poller.getUrl(), schedule);
+			}
+			monitoredSet.waiters.add(waiter);
+			return monitoredSet;
+		});
+
+		return new Registration() {
+			@Override
+			public void cancel() {
+				remove(key, waiter);
+			}
+
+			@Override
+			public void pollNow() {
+				MonitoredSet monitoredSet = sets.get(key);
+				if (monitoredSet != null) {
+					monitoredSet.pollRequested.set(true);
+					monitoredSet.nextPollAt = 0L;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return the number of distinct sets currently polled
+	 */
+	public int getMonitoredSetCount() {
+		return sets.size();
+	}
+
+	private void remove(String key, Waiter waiter) {
+		sets.computeIfPresent(key, (k, monitoredSet) -> {
+			monitoredSet.waiters.remove(waiter);
+			return monitoredSet.waiters.isEmpty() ? null : monitoredSet;
+		});
+	}
+
+	private void tick() {
+		long now = System.currentTimeMillis();
+
+		for (MonitoredSet monitoredSet : sets.values()) {
+			for (Waiter waiter : monitoredSet.waiters) {
+				if (now >= waiter.deadline) {
+					remove(monitoredSet.key, waiter);
+					notifyQuietly(() -> waiter.callback.onTimeout());
+				}
+			}
+
+			if (now >= monitoredSet.nextPollAt && monitoredSet.inFlight.compareAndSet(false, true)) {
+				monitoredSet.pollRequested.set(false);
+				try {
+					pollers.execute(() -> poll(monitoredSet));
+				} catch (RuntimeException x) {
+					monitoredSet.inFlight.set(false);
+					logger.warn("Failed to schedule set status poll for " + monitoredSet.url, x);
+				}
+			}
+		}
+	}
+
+	private void poll(MonitoredSet monitoredSet) {
+		Waiter sender = sender(monitoredSet);
+		if (sender == null) {
+			monitoredSet.inFlight.set(false);
+			return;
+		}
+
+		if (sender.fetch.isAsync(sender.channel)) {
+			// the poller thread is free again as soon as the request is sent; saving the response to the output
+			// files of the builds may go through remoting, keep it off the I/O thread
+			sender.fetch.callAsync().whenCompleteAsync((supplier, x) -> onPolled(monitoredSet, sender, supplier, x),
+					pollers);
+			return;
+		}
+
+		ResponseContentSupplier supplier = null;
+		Throwable failure = null;
+		try {
+			supplier = sender.channel != null
+					? sender.channel.call(sender.fetch)
+					: sender.fetch.call();
+		} catch (Exception | LinkageError x) {
+			failure = x;
+		}
+		onPolled(monitoredSet, sender, supplier, failure);
+	}
+
+	// the first build which can still send the request, builds whose agent went away are done
+	private Waiter sender(MonitoredSet monitoredSet) {
+		for (Waiter waiter : monitoredSet.waiters) {
+			if (!(waiter.channel instanceof Channel) || !((Channel) waiter.channel).isClosingOrClosed()) {
+				return waiter;
+			}
+			remove(monitoredSet.key, waiter);
+			IOException cause = new IOException("The agent polling " + monitoredSet.url + " is disconnected");
+			notifyQuietly(() -> waiter.callback.onError(cause));
+		}
+		return null;
+	}
+
+	private void onPolled(MonitoredSet monitoredSet, Waiter sender, ResponseContentSupplier supplier,
+			Throwable failure) {
+		boolean retry = false;
+		try {
+			if (failure != null) {
+				// the request failed where it was sent from, builds polling from elsewhere try again right away
+				fail(monitoredSet, sender.channel, failure);
+				retry = true;
+				return;
+			}
+
+			JsonProcessor jsonProcessor = new JsonProcessor();
+			SetInfoResponse setInfoResp = jsonProcessor.parse(supplier.getContent(), SetInfoResponse.class);
+			if (setInfoResp == null) {
+				throw new IllegalStateException("Invalid set information returned by " + monitoredSet.url);
+			}
+
+			for (Waiter waiter : monitoredSet.waiters) {
+				try {
+					waiter.poller.processShared(supplier);
+				} catch (IOException | InterruptedException | RuntimeException x) {
+					remove(monitoredSet.key, waiter);
+					notifyQuietly(() -> waiter.callback.onError(x));
+					continue;
+				}
+
+				boolean[] done = new boolean[1];
+				notifyQuietly(() -> done[0] = waiter.callback.onSetInfo(setInfoResp));
+				if (done[0]) {
+					remove(monitoredSet.key, waiter);
+				}
+			}
+		} catch (Exception | LinkageError x) {
+			fail(monitoredSet, x);
+		} finally {
+			long now = System.currentTimeMillis();
+			// a poll requested while this one was in flight may need a newer state than this one returned
+			monitoredSet.nextPollAt = retry || monitoredSet.pollRequested.get() ? 0L
+					: now + monitoredSet.schedule.nextDelay(now - monitoredSet.startedAt);
+			monitoredSet.inFlight.set(false);
+		}
+	}
+
+	private void fail(MonitoredSet monitoredSet, Throwable cause) {
+		List<Waiter> waiters = monitoredSet.waiters;
+		for (Waiter waiter : waiters) {
+			remove(monitoredSet.key, waiter);
+			notifyQuietly(() -> waiter.callback.onError(cause));
+		}
+	}
+
+	// fail the builds which send the request the same way, over the same channel
+	private void fail(MonitoredSet monitoredSet, VirtualChannel channel, Throwable cause) {
+		for (Waiter waiter : monitoredSet.waiters) {
+			if (waiter.channel == channel) {
+				remove(monitoredSet.key, waiter);
+				notifyQuietly(() -> waiter.callback.onError(cause));
+			}
+		}
+	}
+
+	private static void notifyQuietly(Runnable notification) {
+		try {
+			notification.run();
+		} catch (RuntimeException x) {
+			logger.warn("Set status callback failed", x);
+		}
+	}
+
+	@Terminator
+	public static void shutdown() {
+		instance.scheduler.shutdownNow();
+		instance.pollers.shutdownNow();
+	}
+
+	private static class MonitoredSet {
+		private final String key;
+		private final String url;
+		private final PollSchedule schedule;
+		private final long startedAt;
+		private final List<Waiter> waiters = new CopyOnWriteArrayList<>();
+		private final AtomicBoolean inFlight = new AtomicBoolean();
+		private final AtomicBoolean pollRequested = new AtomicBoolean();
+		private volatile long nextPollAt;
+
+		private MonitoredSet(String key, String url, PollSchedule schedule) {
+			this.key = key;
+			this.url = url;
+			this.schedule = schedule;
+			this.startedAt = System.currentTimeMillis();
+			this.nextPollAt = startedAt + schedule.nextDelay(0L);
+		}
+	}
+
+	private static class Waiter {
+		private final HttpRequestExecution poller;
+		private final HttpRequestExecution fetch;
+		private final VirtualChannel channel;
+		private final Callback callback;
+		private final long deadline;
+
+		private Waiter(HttpRequestExecution poller, VirtualChannel channel, Callback callback, long deadline) {
+			this.poller = poller;
+			this.fetch = poller.forSharedFetch();
+			this.channel = channel;
+			this.callback = callback;
+			this.deadline = deadline;
+		}
+	}
+}
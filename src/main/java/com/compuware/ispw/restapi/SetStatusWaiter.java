@@ -0,0 +1,334 @@
+package com.compuware.ispw.restapi;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.StringUtils;
+import com.compuware.ispw.model.rest.SetInfoResponse;
+import com.compuware.ispw.restapi.action.SetOperationAction;
+import com.compuware.ispw.restapi.util.RestApiUtils;
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+
+/**
+ * Follows the state changes of one set for one build and decides when the build is done waiting. It logs every new
+ * set state to the build log and completes with the reason the wait ended.
+ */
+public class SetStatusWaiter implements SetStatusMonitor.Callback {
+
+	/**
+	 * Set to false to poll through the controller side monitor also for builds running on an agent
+	 */
+	static final boolean POLL_ON_AGENT = Boolean
+			.parseBoolean(System.getProperty(SetStatusWaiter.class.getName() + ".pollOnAgent", "true"));
+
+	public enum Outcome {
+		COMPLETED, FAILED, TERMINATED, HELD, UNLOCKED, RELEASED, TIMED_OUT
+	}
+
+	private final PrintStream logger;
+	private final String setId;
+	private final String ispwAction;
+	private final String application;
+	private final String setAction;
+	private final boolean completeOnWaitingApproval;
+
+	private final Set<String> states = new HashSet<String>();
+	private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+	private volatile SetInfoResponse setInfo;
+	// the low rate polling backing up a webhook, started once
+	private final Object safetyPollLock = new Object();
+	private SetStatusMonitor.Registration safetyPoll;
+
+	/**
+	 * @param logger
+	 *            the build log
+	 * @param setId
+	 *            the set ID
+	 * @param ispwAction
+	 *            the ISPW command which created the set
+	 * @param application
+	 *            the application of the set, may be blank, used to look up how long such sets usually take
+	 * @param setAction
+	 *            the set operation (hold, release...) if the command is a set operation
+	 * @param completeOnWaitingApproval
+	 *            true if a set waiting for approval ends the wait
+	 */
+	public SetStatusWaiter(PrintStream logger, String setId, String ispwAction, String application,
+			String setAction, boolean completeOnWaitingApproval) {
+		this.logger = logger;
+		this.setId = setId;
+		this.ispwAction = ispwAction;
+		this.application = application;
+		this.setAction = setAction;
+		this.completeOnWaitingApproval = completeOnWaitingApproval;
+	}
+
+	@Override
+	public synchronized boolean onSetInfo(SetInfoResponse setInfoResp) {
+		setInfo = setInfoResp;
+		String setState = StringUtils.trimToEmpty(setInfoResp.getState());
+		if (states.contains(setState)) {
+			return false;
+		}
+
+		logger.println("Set " + setInfoResp.getSetid() + " status - " + setState);
+		states.add(setState);
+
+		Outcome result = null;
+		if (setState.equals(Constants.SET_STATE_CLOSED) || setState.equals(Constants.SET_STATE_COMPLETE)
+				|| (completeOnWaitingApproval && setState.equals(Constants.SET_STATE_WAITING_APPROVAL))) {
+			logger.println("Action " + ispwAction + " completed");
+			result = Outcome.COMPLETED;
+		}
+		else if (Constants.SET_STATE_FAILED.equalsIgnoreCase(setState))
+		{
+			result = Outcome.FAILED;
+		}
+		else if (Constants.SET_STATE_TERMINATED.equalsIgnoreCase(setState)
+				&& SetOperationAction.SET_ACTION_TERMINATE.equalsIgnoreCase(setAction))
+		{
+			logger.println("Set " + setId + " successfully terminated");
+			result = Outcome.TERMINATED;
+		}
+		else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
+				&& SetOperationAction.SET_ACTION_HOLD.equalsIgnoreCase(setAction))
+		{
+			logger.println("Set " + setId + " successfully held");
+			result = Outcome.HELD;
+		}
+		else if (Constants.SET_STATE_HELD.equalsIgnoreCase(setState)
+				&& SetOperationAction.SET_ACTION_UNLOCK.equalsIgnoreCase(setAction))
+		{
+			logger.println("Set " + setId + " successfully unlocked.  Set is currently held.");
+			result = Outcome.UNLOCKED;
+		}
+		else if ((Constants.SET_STATE_RELEASED.equalsIgnoreCase(setState)
+				|| Constants.SET_STATE_WAITING_LOCK.equalsIgnoreCase(setState))
+				&& SetOperationAction.SET_ACTION_RELEASE.equalsIgnoreCase(setAction))
+		{
+			logger.println("Set " + setId + " successfully released");
+			result = Outcome.RELEASED;
+		}
+
+		if (result != null) {
+			outcome.complete(result);
+			return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public void onError(Throwable cause) {
+		outcome.completeExceptionally(cause);
+	}
+
+	@Override
+	public void onTimeout() {
+		outcome.complete(Outcome.TIMED_OUT);
+	}
+
+	/**
+	 * @return the future completed with the reason the wait ended
+	 */
+	public CompletableFuture<Outcome> getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * @return the last set information received, null if none was received yet
+	 */
+	public SetInfoResponse getSetInfo() {
+		return setInfo;
+	}
+
+	/**
+	 * Block until the set reaches a final state. The calling thread does no polling of its own: if the channel leads
+	 * to an agent, the whole wait runs there in one remoting call, see {@link SetStatusAgentWaiter}; otherwise this
+	 * waiter is registered with the monitor. The polling schedule and the time limit follow from how long sets of the
+	 * same command and application took before, see {@link PollSchedule}.
+	 *
+	 * @param poller
+	 *            the GetSetInfo request for the set
+	 * @param channel
+	 *            the channel to run the request on, null to run it on the controller
+	 * @return the reason the wait ended
+	 * @throws InterruptedException
+	 *             if the build was aborted while waiting
+	 * @throws IOException
+	 *             if polling failed
+	 */
+	public Outcome await(HttpRequestExecution poller, VirtualChannel channel)
+			throws InterruptedException, IOException {
+		long start = System.currentTimeMillis();
+		SetDurationHistory history = SetDurationHistory.get();
+		PollSchedule schedule = PollSchedule.forCommand(ispwAction, history.estimate(ispwAction, application));
+		if (RestApiUtils.isIspwDebugMode()) {
+			logger.println("Waiting for set " + setId + ", expected duration " + schedule.getExpectedMillis()
+					+ " ms, timeout " + schedule.getTimeoutMillis() + " ms");
+		}
+
+		Outcome result;
+		if (POLL_ON_AGENT && channel != null && channel != FilePath.localChannel) {
+			result = awaitOnAgent(poller, channel, schedule);
+		} else {
+			result = awaitOnController(poller, channel, schedule);
+		}
+
+		return record(result, start);
+	}
+
+	/**
+	 * Wait for the set without blocking. If the channel leads to an agent, the whole wait runs there in one remoting
+	 * call, as in {@link #await(HttpRequestExecution, VirtualChannel)}, and no controller thread waits for it; otherwise
+	 * the waiter is registered with the monitor. Cancel the outcome to stop waiting.
+	 *
+	 * @param poller
+	 *            the GetSetInfo request for the set
+	 * @param channel
+	 *            the channel to run the request on, null to run it on the controller
+	 * @return completed with the reason the wait ended
+	 */
+	public CompletableFuture<Outcome> watch(HttpRequestExecution poller, VirtualChannel channel) {
+		long start = System.currentTimeMillis();
+		SetDurationHistory history = SetDurationHistory.get();
+		PollSchedule schedule = PollSchedule.forCommand(ispwAction, history.estimate(ispwAction, application));
+		if (RestApiUtils.isIspwDebugMode()) {
+			logger.println("Waiting for set " + setId + ", expected duration " + schedule.getExpectedMillis()
+					+ " ms, timeout " + schedule.getTimeoutMillis() + " ms");
+		}
+
+		if (POLL_ON_AGENT && channel != null && channel != FilePath.localChannel) {
+			watchOnAgent(poller, channel, schedule);
+		} else {
+			watchOnController(poller, channel, schedule);
+		}
+		return outcome.thenApply(result -> record(result, start));
+	}
+
+	/**
+	 * Wait without blocking until the set reaches a final state, told by CES calling back on the webhook of the set.
+	 * The events of the callback are up to the user, so the callback may be for a failed or terminated set: the set is
+	 * polled right away when it arrives, and the state polled decides how the wait ends. If the webhook stays silent for
+	 * the given time, the set is polled at a low rate. Cancel the outcome to stop waiting.
+	 *
+	 * @param poller
+	 *            the GetSetInfo request for the set
+	 * @param channel
+	 *            the channel to run the request on, null to run it on the controller
+	 * @param webhook
+	 *            completed with the payload when CES calls back
+	 * @param silenceMillis
+	 *            how long to wait for the webhook before polling
+	 * @return completed with the reason the wait ended
+	 */
+	public CompletableFuture<Outcome> watchWebhook(HttpRequestExecution poller, VirtualChannel channel,
+			CompletableFuture<String> webhook, long silenceMillis) {
+		long start = System.currentTimeMillis();
+		webhook.thenAccept(payload -> {
+			if (!outcome.isDone()) {
+				logger.println("Set " + setId + " callback received from CES, checking its status");
+				if (RestApiUtils.isIspwDebugMode()) {
+					logger.println("callback=" + payload);
+				}
+				startSafetyPoll(poller, channel).pollNow();
+			}
+		});
+
+		CompletableFuture<Void> silence = StepExecutors.delay(silenceMillis);
+		outcome.whenComplete((result, x) -> silence.cancel(false));
+		silence.thenRun(() -> {
+			if (!outcome.isDone()) {
+				logger.println("No callback for set " + setId + " after "
+						+ TimeUnit.MILLISECONDS.toSeconds(silenceMillis) + " seconds, checking its status every "
+						+ TimeUnit.MILLISECONDS.toSeconds(PollSchedule.OperationType.forCommand(ispwAction)
+								.getMaxInterval())
+						+ " seconds");
+				startSafetyPoll(poller, channel);
+			}
+		});
+
+		return outcome.thenApply(result -> record(result, start));
+	}
+
+	private SetStatusMonitor.Registration startSafetyPoll(HttpRequestExecution poller, VirtualChannel channel) {
+		synchronized (safetyPollLock) {
+			if (safetyPoll == null) {
+				safetyPoll = watchOnController(poller, channel, PollSchedule.forSafetyPoll(ispwAction));
+			}
+			return safetyPoll;
+		}
+	}
+
+	private Outcome record(Outcome result, long start) {
+		if (result != Outcome.TIMED_OUT && result != Outcome.FAILED) {
+			SetDurationHistory.get().record(ispwAction, application, System.currentTimeMillis() - start);
+		}
+		return result;
+	}
+
+	private Outcome awaitOnAgent(HttpRequestExecution poller, VirtualChannel channel, PollSchedule schedule)
+			throws InterruptedException, IOException {
+		SetStatusAgentWaiter.Result result = channel.call(new SetStatusAgentWaiter(poller, setId, ispwAction,
+				setAction, completeOnWaitingApproval, schedule));
+		setInfo = result.getSetInfo();
+		outcome.complete(result.getOutcome());
+		return result.getOutcome();
+	}
+
+	private void watchOnAgent(HttpRequestExecution poller, VirtualChannel channel, PollSchedule schedule) {
+		CompletableFuture<SetStatusAgentWaiter.Result> call;
+		try {
+			call = StepExecutors.whenDone(channel.callAsync(new SetStatusAgentWaiter(poller, setId, ispwAction,
+					setAction, completeOnWaitingApproval, schedule)));
+		} catch (IOException x) {
+			outcome.completeExceptionally(x);
+			return;
+		}
+		call.whenComplete((result, x) -> {
+			if (x != null) {
+				outcome.completeExceptionally(x);
+			} else {
+				setInfo = result.getSetInfo();
+				outcome.complete(result.getOutcome());
+			}
+		});
+		// cancelling the outcome interrupts the wait on the agent
+		outcome.whenComplete((result, x) -> call.cancel(true));
+	}
+
+	private Outcome awaitOnController(HttpRequestExecution poller, VirtualChannel channel, PollSchedule schedule)
+			throws InterruptedException, IOException {
+		watchOnController(poller, channel, schedule);
+		try {
+			return outcome.get();
+		} catch (ExecutionException x) {
+			throw unwrap(x);
+		} finally {
+			// interrupted, stop polling
+			outcome.cancel(false);
+		}
+	}
+
+	private SetStatusMonitor.Registration watchOnController(HttpRequestExecution poller, VirtualChannel channel,
+			PollSchedule schedule) {
+		SetStatusMonitor.Registration registration = SetStatusMonitor.get().watch(poller, channel, schedule, this);
+		outcome.whenComplete((result, x) -> registration.cancel());
+		return registration;
+	}
+
+	private static IOException unwrap(ExecutionException x) {
+		Throwable cause = x.getCause();
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		return new IOException(cause);
+	}
+}
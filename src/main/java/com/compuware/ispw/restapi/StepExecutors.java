@@ -0,0 +1,112 @@
+package com.compuware.ispw.restapi;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Threads shared by all asynchronous ISPW pipeline steps. A step only takes a request thread while it sends a request
+ * and waits for its response; waiting for a set or for the next step of an operation takes no thread at all.
+ */
+public class StepExecutors {
+
+	private static final String PROPERTY_PREFIX = StepExecutors.class.getName();
+
+	static final int REQUEST_THREADS = Integer.getInteger(PROPERTY_PREFIX + ".requestThreads", 16);
+	static final long CHECK_MILLIS = Long.getLong(PROPERTY_PREFIX + ".checkMillis", 1000L);
+
+	private static final ExecutorService requests = Executors.newFixedThreadPool(REQUEST_THREADS,
+			new NamingThreadFactory(new DaemonThreadFactory(), "ISPW step request"));
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+			new NamingThreadFactory(new DaemonThreadFactory(), "ISPW step timer"));
+
+	private StepExecutors() {
+	}
+
+	/**
+	 * Run a blocking request on a request thread
+	 *
+	 * @param request
+	 *            the request
+	 * @return completed with the result of the request; cancelling it interrupts the request
+	 */
+	public static <T> CompletableFuture<T> supply(Callable<T> request) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Future<?> task = requests.submit(() -> {
+			try {
+				result.complete(request.call());
+			} catch (Throwable x) {
+				result.completeExceptionally(x);
+			}
+		});
+		result.whenComplete((value, x) -> {
+			if (result.isCancelled()) {
+				task.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @param millis
+	 *            the delay
+	 * @return completed once the delay elapsed
+	 */
+	public static CompletableFuture<Void> delay(long millis) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		ScheduledFuture<?> task = timer.schedule(() -> result.complete(null), millis, TimeUnit.MILLISECONDS);
+		result.whenComplete((value, x) -> {
+			if (result.isCancelled()) {
+				task.cancel(false);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Follow a future which cannot tell when it is done, such as the future of a remoting call, by checking it on the
+	 * timer; no thread waits for it.
+	 *
+	 * @param future
+	 *            the future
+	 * @return completed with the result of the future; cancelling it cancels the future, interrupting a remoting call
+	 */
+	public static <T> CompletableFuture<T> whenDone(Future<T> future) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		ScheduledFuture<?> check = timer.scheduleWithFixedDelay(() -> {
+			if (result.isDone() || !future.isDone()) {
+				return;
+			}
+			try {
+				result.complete(future.get());
+			} catch (ExecutionException x) {
+				result.completeExceptionally(x.getCause());
+			} catch (CancellationException | InterruptedException x) {
+				result.completeExceptionally(x);
+			}
+		}, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+		result.whenComplete((value, x) -> {
+			check.cancel(false);
+			if (result.isCancelled()) {
+				future.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	@Terminator
+	public static void shutdown() {
+		requests.shutdownNow();
+		timer.shutdownNow();
+	}
+}
@@ -3,7 +3,7 @@ package com.compuware.ispw.restapi;
 import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 
-public class WaitForWebhookExecution extends AbstractStepExecutionImpl {
+public class WaitForWebhookExecution extends AbstractStepExecutionImpl implements WebhookRegistry.Listener {
 
     private static final long serialVersionUID = -148119134567863021L;
 
@@ -42,6 +42,7 @@ public class WaitForWebhookExecution extends AbstractStepExecutionImpl {
         start();
     }
 
+    @Override
     public void onTriggered(String content) {
         getContext().onSuccess(content);
     }
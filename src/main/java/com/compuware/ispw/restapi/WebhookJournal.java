@@ -0,0 +1,399 @@
+package com.compuware.ispw.restapi;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.log4j.Logger;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+/**
+ * Append-only journal of webhook payloads which arrived before their pipeline step, kept in the Jenkins home so the
+ * payloads survive a controller restart. Each line records a token being issued, a payload being posted, or the token
+ * being consumed. Issued tokens are journaled too, so the webhook still accepts the payloads of the builds which were
+ * running before a restart.
+ * <p>
+ * A single writer thread appends the records: all records queued while the previous batch was written go to disk with
+ * one fsync. The journal is compacted to the issued tokens and pending payloads when it is opened and whenever it holds
+ * mostly consumed records. Tokens and payloads are dropped on compaction once they are older than
+ * <code>com.compuware.ispw.restapi.WebhookJournal.retentionMillis</code>, a week by default. This is far longer than the
+ * time to live of the {@link WebhookRegistry}, which only starts counting for a restored payload once the controller is
+ * back, so a payload survives even a long outage.
+ */
+public class WebhookJournal {
+
+	private static Logger logger = Logger.getLogger(WebhookJournal.class);
+
+	private static final String PROPERTY_PREFIX = WebhookJournal.class.getName();
+
+	static final long WRITE_TIMEOUT_MILLIS = Long.getLong(PROPERTY_PREFIX + ".writeTimeoutMillis", 5000L);
+	static final int COMPACT_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + ".compactThreshold", 1000);
+	static final long RETENTION_MILLIS = Long.getLong(PROPERTY_PREFIX + ".retentionMillis", TimeUnit.DAYS.toMillis(7));
+
+	private static final String ISSUED = "I";
+	private static final String POSTED = "P";
+	private static final String CONSUMED = "C";
+
+	private final Path file;
+	private final long retentionMillis;
+	// pending payloads, guarded by this
+	private final Map<String, Payload> pending = new LinkedHashMap<>();
+	// tokens issued and not consumed yet with the time they were issued, guarded by this
+	private final Map<String, Long> issued = new LinkedHashMap<>();
+	private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+	private final Thread writer;
+
+	private FileChannel channel;
+	private int recordCount;
+	private volatile boolean closed;
+
+	/**
+	 * A payload which has not been consumed yet
+	 */
+	public static class Payload {
+		private final String content;
+		private final long postedAt;
+
+		private Payload(String content, long postedAt) {
+			this.content = content;
+			this.postedAt = postedAt;
+		}
+
+		public String getContent() {
+			return content;
+		}
+
+		public long getPostedAt() {
+			return postedAt;
+		}
+	}
+
+	private static class Record {
+		private final String type;
+		private final String token;
+		private final Payload payload;
+		private final long issuedAt;
+		private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+		private Record(String type, String token, Payload payload) {
+			this(type, token, payload, 0L);
+		}
+
+		private Record(String type, String token, Payload payload, long issuedAt) {
+			this.type = type;
+			this.token = token;
+			this.payload = payload;
+			this.issuedAt = issuedAt;
+		}
+	}
+
+	WebhookJournal(Path file, long retentionMillis) throws IOException {
+		this.file = file;
+		this.retentionMillis = retentionMillis;
+
+		load();
+		compact();
+
+		writer = new NamingThreadFactory(new DaemonThreadFactory(), "ISPW webhook journal writer")
+				.newThread(this::writeLoop);
+		writer.start();
+	}
+
+	/**
+	 * @return the journal in the Jenkins home, null if there is no Jenkins or the journal cannot be opened
+	 */
+	public static WebhookJournal open() {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		if (jenkins == null) {
+			return null;
+		}
+
+		File file = new File(jenkins.getRootDir(), PROPERTY_PREFIX + ".log");
+		try {
+			return new WebhookJournal(file.toPath(), RETENTION_MILLIS);
+		} catch (IOException e) {
+			logger.error("Failed to open webhook journal " + file + ", early webhook payloads will not survive a restart",
+					e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the payloads which were posted and not consumed before the journal was opened
+	 */
+	public synchronized Map<String, Payload> getPending() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+	}
+
+	/**
+	 * @return the tokens which were issued and not consumed before the journal was opened, with the time they were
+	 *         issued
+	 */
+	public synchronized Map<String, Long> getIssued() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(issued));
+	}
+
+	/**
+	 * Record a token handed out to a build, does not wait for the disk
+	 *
+	 * @param token
+	 *            the webhook token
+	 * @param issuedAt
+	 *            when the token was issued
+	 */
+	public void issued(String token, long issuedAt) {
+		enqueue(new Record(ISSUED, token, null, issuedAt));
+	}
+
+	/**
+	 * Record an early payload. Records are written in the order of these calls, so callers keep the records of one
+	 * token in order by calling this while they update the token.
+	 *
+	 * @param token
+	 *            the webhook token
+	 * @param content
+	 *            the payload
+	 * @param postedAt
+	 *            when the payload arrived
+	 * @return completed once the payload is on disk, pass it to {@link #awaitWritten(CompletableFuture, String)}
+	 */
+	public CompletableFuture<Void> posted(String token, String content, long postedAt) {
+		Record record = new Record(POSTED, token, new Payload(content, postedAt));
+		enqueue(record);
+		return record.written;
+	}
+
+	/**
+	 * Wait until a payload is on disk
+	 *
+	 * @param written
+	 *            the future returned by {@link #posted(String, String, long)}
+	 * @param token
+	 *            the webhook token
+	 * @throws IOException
+	 *             if the payload could not be written in time
+	 */
+	public void awaitWritten(CompletableFuture<Void> written, String token) throws IOException {
+		try {
+			written.get(WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing webhook payload for " + token);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to write webhook payload for " + token, e.getCause());
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out writing webhook payload for " + token, e);
+		}
+	}
+
+	/**
+	 * Record that a token is used up: its payload was handed to its step or dropped, or its step stopped waiting. Does
+	 * not wait for the disk
+	 *
+	 * @param token
+	 *            the webhook token
+	 */
+	public void consumed(String token) {
+		enqueue(new Record(CONSUMED, token, null));
+	}
+
+	private void enqueue(Record record) {
+		if (closed) {
+			record.written.completeExceptionally(new IOException("Webhook journal is closed"));
+			return;
+		}
+		queue.add(record);
+	}
+
+	public void close() {
+		closed = true;
+		writer.interrupt();
+	}
+
+	private void writeLoop() {
+		List<Record> batch = new ArrayList<>();
+		try {
+			while (!closed) {
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				write(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} finally {
+			queue.drainTo(batch);
+			for (Record record : batch) {
+				record.written.completeExceptionally(new IOException("Webhook journal is closed"));
+			}
+			closeChannel();
+		}
+	}
+
+	private synchronized void write(List<Record> batch) {
+		try {
+			if (channel == null) {
+				// a previous compaction failed to reopen the journal
+				openChannel();
+			}
+
+			StringBuilder sb = new StringBuilder();
+			for (Record record : batch) {
+				if (ISSUED.equals(record.type)) {
+					appendIssued(sb, record.token, record.issuedAt);
+					issued.put(record.token, record.issuedAt);
+				} else if (record.payload != null) {
+					append(sb, record.type, record.token, record.payload);
+					pending.put(record.token, record.payload);
+				} else {
+					append(sb, record.type, record.token, null);
+					pending.remove(record.token);
+					issued.remove(record.token);
+				}
+			}
+
+			ByteBuffer bytes = StandardCharsets.UTF_8.encode(sb.toString());
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+			recordCount += batch.size();
+
+			for (Record record : batch) {
+				record.written.complete(null);
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.error("Failed to write webhook journal " + file, e);
+			for (Record record : batch) {
+				record.written.completeExceptionally(e);
+			}
+			return;
+		}
+
+		if (recordCount > COMPACT_THRESHOLD && recordCount > 2 * (pending.size() + issued.size())) {
+			try {
+				compact();
+			} catch (IOException | RuntimeException e) {
+				// the journal keeps all records, compaction is tried again with the next batch
+				logger.warn("Failed to compact webhook journal " + file, e);
+			}
+		}
+	}
+
+	private static void append(StringBuilder sb, String type, String token, Payload payload) {
+		Base64.Encoder encoder = Base64.getEncoder();
+		sb.append(type).append(' ');
+		sb.append(encoder.encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+		if (payload != null) {
+			sb.append(' ').append(payload.postedAt).append(' ');
+			sb.append(encoder.encodeToString(payload.content.getBytes(StandardCharsets.UTF_8)));
+		}
+		sb.append('\n');
+	}
+
+	private static void appendIssued(StringBuilder sb, String token, long issuedAt) {
+		sb.append(ISSUED).append(' ');
+		sb.append(Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8)));
+		sb.append(' ').append(issuedAt).append('\n');
+	}
+
+	private void load() throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+
+		Base64.Decoder decoder = Base64.getDecoder();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(" ");
+				try {
+					String token = new String(decoder.decode(fields[1]), StandardCharsets.UTF_8);
+					if (ISSUED.equals(fields[0]) && fields.length == 3) {
+						issued.put(token, Long.parseLong(fields[2]));
+					} else if (POSTED.equals(fields[0]) && fields.length == 4) {
+						String content = new String(decoder.decode(fields[3]), StandardCharsets.UTF_8);
+						pending.put(token, new Payload(content, Long.parseLong(fields[2])));
+					} else if (CONSUMED.equals(fields[0]) && fields.length == 2) {
+						pending.remove(token);
+						issued.remove(token);
+					}
+				} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+					// a record cut short by a crash
+					logger.warn("Ignoring invalid record in webhook journal " + file);
+				}
+			}
+		}
+	}
+
+	// rewrite the journal with the issued tokens and pending payloads only
+	private void compact() throws IOException {
+		long now = System.currentTimeMillis();
+		pending.values().removeIf(payload -> now - payload.postedAt > retentionMillis);
+		issued.values().removeIf(issuedAt -> now - issuedAt > retentionMillis);
+
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Long> entry : issued.entrySet()) {
+			appendIssued(sb, entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, Payload> entry : pending.entrySet()) {
+			append(sb, POSTED, entry.getKey(), entry.getValue());
+		}
+
+		// the journal is replaced while it is closed, which Windows requires
+		closeChannel();
+		try {
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer bytes = StandardCharsets.UTF_8.encode(sb.toString());
+				while (bytes.hasRemaining()) {
+					out.write(bytes);
+				}
+				out.force(false);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			recordCount = pending.size() + issued.size();
+		} finally {
+			// append to the new journal, or to the old one if it could not be replaced
+			openChannel();
+		}
+	}
+
+	private void openChannel() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	private synchronized void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close webhook journal " + file, e);
+			}
+			channel = null;
+		}
+	}
+}
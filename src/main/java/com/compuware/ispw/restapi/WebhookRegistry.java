@@ -0,0 +1,382 @@
+package com.compuware.ispw.restapi;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Hands webhook payloads over to the pipeline steps waiting for them. CES may call the webhook before the step
+ * registers, so each token maps either to the waiting step or to the early payload, and the handoff between the two is
+ * one atomic map update. The webhook is not authenticated, so early payloads are only kept for tokens the plugin
+ * issued to a build; payloads for any other token are refused and cannot use up the room of real callbacks. Early
+ * payloads are bounded in size and number, and dropped after a time to live if no step ever picks them up. Early payloads are also written to the {@link WebhookJournal}, so a step resumed after a
+ * controller restart still finds the payload posted before the restart, and so are issued tokens. The time to live of
+ * a restored payload or token starts when it is restored, the time the controller was down does not count.
+ */
+public class WebhookRegistry {
+
+	private static Logger logger = Logger.getLogger(WebhookRegistry.class);
+
+	private static final String PROPERTY_PREFIX = WebhookRegistry.class.getName();
+
+	static final int MAX_PAYLOAD_CHARS = Integer.getInteger(PROPERTY_PREFIX + ".maxPayloadChars", 64 * 1024);
+	static final int MAX_EARLY_PAYLOADS = Integer.getInteger(PROPERTY_PREFIX + ".maxEarlyPayloads", 1000);
+	static final long PAYLOAD_TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".payloadTtlMillis",
+			TimeUnit.MINUTES.toMillis(30));
+	static final long ISSUED_TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".issuedTtlMillis",
+			TimeUnit.DAYS.toMillis(1));
+	static final long SWEEP_INTERVAL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".sweepIntervalMillis",
+			TimeUnit.MINUTES.toMillis(1));
+
+	private static final WebhookRegistry instance = new WebhookRegistry();
+
+	/**
+	 * Receives the payload of a webhook
+	 */
+	public interface Listener {
+
+		void onTriggered(String content);
+	}
+
+	/**
+	 * What happened to a webhook payload
+	 */
+	public enum Delivery {
+		/** a waiting step received the payload */
+		TRIGGERED,
+		/** no step waits yet, the payload is kept for it */
+		STORED,
+		/** the payload is larger than allowed */
+		TOO_LARGE,
+		/** the token was never issued to a build, or its build no longer waits */
+		UNKNOWN,
+		/** too many payloads are waiting for their steps */
+		FULL
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService sweeper;
+	private final WebhookJournal journal;
+
+	private final AtomicInteger waitingCount = new AtomicInteger();
+	private final AtomicInteger earlyPayloadCount = new AtomicInteger();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong rejections = new AtomicLong();
+
+	private WebhookRegistry() {
+		journal = WebhookJournal.open();
+		if (journal != null) {
+			long restoredAt = System.currentTimeMillis();
+			for (String token : journal.getIssued().keySet()) {
+				entries.put(token, new Entry(restoredAt));
+			}
+			for (Map.Entry<String, WebhookJournal.Payload> pending : journal.getPending().entrySet()) {
+				WebhookJournal.Payload payload = pending.getValue();
+				entries.put(pending.getKey(), new Entry(payload.getContent(), restoredAt));
+				earlyPayloadCount.incrementAndGet();
+			}
+			if (!entries.isEmpty()) {
+				logger.info("Restored " + entries.size() + " webhook tokens and payloads from the journal");
+			}
+		}
+
+		sweeper = Executors.newSingleThreadScheduledExecutor(
+				new NamingThreadFactory(new DaemonThreadFactory(), "ISPW webhook registry sweeper"));
+		sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public static WebhookRegistry get() {
+		return instance;
+	}
+
+	/**
+	 * Accept payloads for a token handed out to a build, the webhook refuses payloads for any other token
+	 *
+	 * @param token
+	 *            the webhook token
+	 */
+	public void issue(String token) {
+		long now = System.currentTimeMillis();
+		entries.computeIfAbsent(token, k -> {
+			if (journal != null) {
+				journal.issued(k, now);
+			}
+			return new Entry(now);
+		});
+	}
+
+	/**
+	 * Pass a webhook payload to the step waiting for the token, or keep it until the step registers
+	 *
+	 * @param token
+	 *            the webhook token
+	 * @param content
+	 *            the payload
+	 * @return what happened to the payload
+	 */
+	public Delivery deliver(String token, String content) {
+		if (content.length() > MAX_PAYLOAD_CHARS) {
+			rejections.incrementAndGet();
+			return Delivery.TOO_LARGE;
+		}
+
+		long now = System.currentTimeMillis();
+		Listener[] waiting = new Listener[1];
+		boolean[] unknown = new boolean[1];
+		boolean[] full = new boolean[1];
+		@SuppressWarnings("unchecked")
+		CompletableFuture<Void>[] written = new CompletableFuture[1];
+		entries.compute(token, (k, entry) -> {
+			if (entry == null) {
+				unknown[0] = true;
+				return null;
+			}
+			if (entry.listener != null) {
+				waiting[0] = entry.listener;
+				waitingCount.decrementAndGet();
+				consumed(k);
+				return null;
+			}
+			if (entry.content == null) {
+				if (earlyPayloadCount.get() >= MAX_EARLY_PAYLOADS) {
+					full[0] = true;
+					return entry;
+				}
+				earlyPayloadCount.incrementAndGet();
+			}
+			// a repeated call replaces the earlier payload
+			if (journal != null) {
+				written[0] = journal.posted(k, content, now);
+			}
+			return new Entry(content, now);
+		});
+
+		if (waiting[0] != null) {
+			hits.incrementAndGet();
+			waiting[0].onTriggered(content);
+			return Delivery.TRIGGERED;
+		}
+		if (unknown[0]) {
+			rejections.incrementAndGet();
+			return Delivery.UNKNOWN;
+		}
+		if (full[0]) {
+			rejections.incrementAndGet();
+			return Delivery.FULL;
+		}
+		misses.incrementAndGet();
+		if (written[0] != null) {
+			try {
+				journal.awaitWritten(written[0], token);
+			} catch (IOException e) {
+				logger.warn("Webhook payload for " + token + " will not survive a restart", e);
+			}
+		}
+		return Delivery.STORED;
+	}
+
+	/**
+	 * Register a step waiting for its webhook
+	 *
+	 * @param token
+	 *            the webhook token
+	 * @param listener
+	 *            the waiting step
+	 * @return the payload if the webhook was already called, null if the step was registered
+	 */
+	public String register(String token, Listener listener) {
+		long now = System.currentTimeMillis();
+		String[] content = new String[1];
+		entries.compute(token, (k, entry) -> {
+			if (entry != null && entry.content != null) {
+				earlyPayloadCount.decrementAndGet();
+				consumed(k);
+				if (!entry.isExpired(now)) {
+					content[0] = entry.content;
+					return null;
+				}
+				evictions.incrementAndGet();
+			} else if (entry != null && entry.listener != null) {
+				// registered again, e.g. after a restart
+				return new Entry(listener);
+			}
+			waitingCount.incrementAndGet();
+			return new Entry(listener);
+		});
+
+		if (content[0] != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return content[0];
+	}
+
+	/**
+	 * Stop waiting for a webhook, does nothing if the webhook was already delivered
+	 *
+	 * @param token
+	 *            the webhook token
+	 * @param listener
+	 *            the waiting step
+	 */
+	public void deregister(String token, Listener listener) {
+		entries.computeIfPresent(token, (k, entry) -> {
+			if (entry.listener == listener) {
+				waitingCount.decrementAndGet();
+				consumed(k);
+				return null;
+			}
+			return entry;
+		});
+	}
+
+	void sweep() {
+		long now = System.currentTimeMillis();
+		int evicted = 0;
+		for (String token : entries.keySet()) {
+			boolean[] expired = new boolean[1];
+			entries.computeIfPresent(token, (k, entry) -> {
+				if (entry.content != null && entry.isExpired(now)) {
+					earlyPayloadCount.decrementAndGet();
+					consumed(k);
+					expired[0] = true;
+					return null;
+				}
+				if (entry.isUnused(now)) {
+					// the build never waited for its webhook
+					consumed(k);
+					return null;
+				}
+				return entry;
+			});
+			if (expired[0]) {
+				evicted++;
+			}
+		}
+
+		if (evicted > 0) {
+			evictions.addAndGet(evicted);
+			logger.info("Dropped " + evicted + " webhook payloads no build picked up; " + this);
+		}
+	}
+
+	private void consumed(String token) {
+		if (journal != null) {
+			journal.consumed(token);
+		}
+	}
+
+	/**
+	 * @return the number of steps waiting for their webhook
+	 */
+	public int getWaitingCount() {
+		return waitingCount.get();
+	}
+
+	/**
+	 * @return the number of payloads waiting for their step
+	 */
+	public int getEarlyPayloadCount() {
+		return earlyPayloadCount.get();
+	}
+
+	/**
+	 * @return how often a payload and its step met, a payload arriving for a waiting step or a step finding its payload
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return how often one side had to wait for the other
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the share of hits in all lookups, 0 if there was no lookup
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		return total > 0 ? (double) hits / total : 0.0;
+	}
+
+	/**
+	 * @return the number of payloads dropped because no step picked them up in time
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of payloads refused for their size, for a token never issued, or because the registry was full
+	 */
+	public long getRejections() {
+		return rejections.get();
+	}
+
+	@Override
+	public String toString() {
+		return "waiting=" + getWaitingCount() + ", earlyPayloads=" + getEarlyPayloadCount() + ", hitRate="
+				+ String.format("%.2f", getHitRate()) + ", evictions=" + getEvictions() + ", rejections="
+				+ getRejections();
+	}
+
+	@Terminator
+	public static void shutdown() {
+		instance.sweeper.shutdownNow();
+		if (instance.journal != null) {
+			instance.journal.close();
+		}
+	}
+
+	private static class Entry {
+		private final Listener listener;
+		private final String content;
+		private final long postedAt;
+
+		private Entry(Listener listener) {
+			this.listener = listener;
+			this.content = null;
+			this.postedAt = 0L;
+		}
+
+		private Entry(String content, long postedAt) {
+			this.listener = null;
+			this.content = content;
+			this.postedAt = postedAt;
+		}
+
+		// an issued token nothing was posted to or registered for yet
+		private Entry(long issuedAt) {
+			this.listener = null;
+			this.content = null;
+			this.postedAt = issuedAt;
+		}
+
+		private boolean isExpired(long now) {
+			return now - postedAt > PAYLOAD_TTL_MILLIS;
+		}
+
+		private boolean isUnused(long now) {
+			return listener == null && content == null && now - postedAt > ISSUED_TTL_MILLIS;
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package com.compuware.ispw.restapi;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -11,19 +10,17 @@ import javax.servlet.http.HttpServletResponse;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
+import com.compuware.ispw.restapi.util.BoundedBodyReader;
+import com.compuware.ispw.restapi.util.BoundedBodyReader.PayloadTooLargeException;
+
 import hudson.Extension;
 import hudson.model.UnprotectedRootAction;
 import hudson.security.csrf.CrumbExclusion;
-import java.io.BufferedReader;
-import java.nio.CharBuffer;
 import java.util.logging.Logger;
 
 @Extension
 public class WebhookRootAction extends CrumbExclusion implements UnprotectedRootAction {
 
-    private static final HashMap<String, WaitForWebhookExecution> webhooks = new HashMap<>();
-    private static final HashMap<String, String> alreadyPosted = new HashMap<>();
-
     @Override
     public String getDisplayName() {
         return null;
@@ -42,15 +39,19 @@ public class WebhookRootAction extends CrumbExclusion implements UnprotectedRoot
     public void doDynamic(StaplerRequest request, StaplerResponse response) {
         String token = request.getOriginalRestOfPath().substring(1); //Strip leading slash
 
-        CharBuffer dest = CharBuffer.allocate(1024);
-        StringBuffer content = new StringBuffer();
-        try {
-            BufferedReader reader = request.getReader();
+        int maxChars = WebhookRegistry.MAX_PAYLOAD_CHARS;
+        // a UTF-8 character takes at most 4 bytes, refuse bodies which cannot fit before reading them
+        if (request.getContentLength() > 4L * maxChars) {
+            response.setStatus(413);
+            return;
+        }
 
-            while (reader.read(dest) > 0) {
-                dest.rewind();
-                content.append(dest.toString());
-            }
+        String content;
+        try {
+            content = BoundedBodyReader.read(request.getInputStream(), request.getCharacterEncoding(), maxChars);
+        } catch (PayloadTooLargeException e) {
+            response.setStatus(413);
+            return;
         } catch (IOException e) {
             response.setStatus(400);
             return;
@@ -59,46 +60,38 @@ public class WebhookRootAction extends CrumbExclusion implements UnprotectedRoot
         Logger.getLogger(WebhookRootAction.class.getName())
                 .info("Webhook called with " + token);
 
-        WaitForWebhookExecution exec;
-        synchronized (webhooks) {
-            exec = webhooks.remove(token);
-            if (exec == null) {
-                //pipeline has not yet waited on webhook, add an entry to track 
-                //that it was already triggered
-                alreadyPosted.put(token, content.toString());
-            }
+        //if the pipeline has not yet waited on the webhook, the payload is kept until it does
+        switch (WebhookRegistry.get().deliver(token, content)) {
+            case TRIGGERED:
+                response.setHeader("Result", "WebhookTriggered");
+                response.setStatus(200);
+                break;
+            case STORED:
+                response.setStatus(202);
+                break;
+            case TOO_LARGE:
+                response.setStatus(413);
+                break;
+            case UNKNOWN:
+                response.setStatus(404);
+                break;
+            default:
+                response.setStatus(503);
+                break;
         }
-
-        if (exec != null) {
-            exec.onTriggered(content.toString());
-            response.setHeader("Result", "WebhookTriggered");
-            response.setStatus(200);
-        } else {
-            response.setStatus(202);
-        }
-
     }
 
     //Returns null when the webhook has been registered, the content when the webhook has already been called
     public static String registerWebhook(WaitForWebhookExecution exec) {
         Logger.getLogger(WebhookRootAction.class.getName())
                 .info("Registering webhook with token " + exec.getToken());
-        synchronized (webhooks) {
-            if (alreadyPosted.containsKey(exec.getToken())) {
-                return alreadyPosted.remove(exec.getToken());
-            }
-
-            webhooks.put(exec.getToken(), exec);
-        }
-        return null;
+        return WebhookRegistry.get().register(exec.getToken(), exec);
     }
 
     public static void deregisterWebhook(WaitForWebhookExecution exec) {
         Logger.getLogger(WebhookRootAction.class.getName())
                 .info("Deregistering webhook with token " + exec.getToken());
-        synchronized (webhooks) {
-            webhooks.remove(exec.getToken());
-        }
+        WebhookRegistry.get().deregister(exec.getToken(), exec);
     }
 
     @Override
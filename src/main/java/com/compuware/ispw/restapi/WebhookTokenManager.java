@@ -1,40 +1,149 @@
-package com.compuware.ispw.restapi;
-
-import java.util.HashMap;
-
-/**
- * Web hook token manager
- * 
- * @author Sam Zhou
- *
- */
-public class WebhookTokenManager {
-	
-	private static WebhookTokenManager instance;
-
-	private HashMap<String, WebhookToken> tagToToken;
-
-	private WebhookTokenManager() {
-		tagToToken = new HashMap<String, WebhookToken>();
-	}
-
-	public synchronized static WebhookTokenManager getInstance() {
-		if (instance == null) {
-			instance = new WebhookTokenManager();
-		}
-
-		return instance;
-	}
-
-	public synchronized void put(String buildTag, WebhookToken token) {
-		tagToToken.put(buildTag, token);
-	}
-
-	public WebhookToken get(String buildTag) {
-		return tagToToken.get(buildTag);
-	}
-
-	public synchronized WebhookToken remove(String buildTag) {
-		return tagToToken.remove(buildTag);
-	}
-}
+package com.compuware.ispw.restapi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.apache.log4j.Logger;
+import com.compuware.ispw.restapi.util.RestApiUtils;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Web hook token manager. Tokens are kept per build tag while the build runs and removed when it completes or is
+ * deleted. The number of tokens is capped and tokens expire, in case a build never reports its completion.
+ *
+ * @author Sam Zhou
+ *
+ */
+public class WebhookTokenManager {
+
+	private static Logger logger = Logger.getLogger(WebhookTokenManager.class);
+
+	private static final String PROPERTY_PREFIX = WebhookTokenManager.class.getName();
+
+	static final int MAX_TOKENS = Integer.getInteger(PROPERTY_PREFIX + ".maxTokens", 10000);
+	static final long TOKEN_TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".tokenTtlMillis", TimeUnit.DAYS.toMillis(1));
+
+	private static final WebhookTokenManager instance = new WebhookTokenManager();
+
+	// stands for a missing build tag, which the map cannot hold as a key
+	private static final String NO_BUILD_TAG = "\u0000";
+
+	private final ConcurrentHashMap<String, Entry> tagToToken = new ConcurrentHashMap<>();
+
+	private WebhookTokenManager() {
+	}
+
+	public static WebhookTokenManager getInstance() {
+		return instance;
+	}
+
+	public void put(String buildTag, WebhookToken token) {
+		if (buildTag == null && RestApiUtils.isIspwDebugMode()) {
+			logger.info("...keeping webhookToken without a buildTag");
+		}
+
+		long now = System.currentTimeMillis();
+		tagToToken.put(key(buildTag), new Entry(token, now));
+
+		if (tagToToken.size() > MAX_TOKENS) {
+			evict(now);
+		}
+	}
+
+	public WebhookToken get(String buildTag) {
+		String key = key(buildTag);
+		Entry entry = tagToToken.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis())) {
+			tagToToken.remove(key, entry);
+			return null;
+		}
+		return entry.token;
+	}
+
+	public WebhookToken remove(String buildTag) {
+		Entry entry = tagToToken.remove(key(buildTag));
+		return entry != null ? entry.token : null;
+	}
+
+	/**
+	 * @return the number of tokens currently kept
+	 */
+	public int size() {
+		return tagToToken.size();
+	}
+
+	private static String key(String buildTag) {
+		return buildTag != null ? buildTag : NO_BUILD_TAG;
+	}
+
+	// drop expired tokens, then the oldest ones until the cap is met again
+	private void evict(long now) {
+		tagToToken.entrySet().removeIf(e -> e.getValue().isExpired(now));
+
+		while (tagToToken.size() > MAX_TOKENS) {
+			String oldestTag = null;
+			long oldest = Long.MAX_VALUE;
+			for (Map.Entry<String, Entry> e : tagToToken.entrySet()) {
+				if (e.getValue().createdAt < oldest) {
+					oldest = e.getValue().createdAt;
+					oldestTag = e.getKey();
+				}
+			}
+			if (oldestTag == null) {
+				break;
+			}
+			tagToToken.remove(oldestTag);
+			logger.warn("Too many webhook tokens, dropped the token of " + oldestTag);
+		}
+	}
+
+	private static class Entry {
+		private final WebhookToken token;
+		private final long createdAt;
+
+		private Entry(WebhookToken token, long createdAt) {
+			this.token = token;
+			this.createdAt = createdAt;
+		}
+
+		private boolean isExpired(long now) {
+			return now - createdAt > TOKEN_TTL_MILLIS;
+		}
+	}
+
+	/**
+	 * Removes the token of a build once it is no longer needed
+	 */
+	@Extension
+	public static class BuildListener extends RunListener<Run<?, ?>> {
+
+		@Override
+		public void onCompleted(Run<?, ?> run, @Nonnull TaskListener listener) {
+			removeToken(run);
+		}
+
+		@Override
+		public void onDeleted(Run<?, ?> run) {
+			removeToken(run);
+		}
+
+		private static void removeToken(Run<?, ?> run) {
+			if (instance.tagToToken.isEmpty()) {
+				return;
+			}
+
+			String buildTag = run.getCharacteristicEnvVars().get("BUILD_TAG");
+			WebhookToken token = instance.remove(buildTag);
+			if (token != null && RestApiUtils.isIspwDebugMode()) {
+				logger.info("...removed webhookToken of buildTag=" + buildTag);
+			}
+		}
+	}
+}
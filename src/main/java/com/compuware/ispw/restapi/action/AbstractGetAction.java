@@ -1,11 +1,14 @@
 package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
+import java.util.HashMap;
 import java.util.List;
-import org.apache.commons.lang3.StringUtils;
+import java.util.Map;
 import com.compuware.ispw.restapi.HttpMode;
 import com.compuware.ispw.restapi.IspwContextPathBean;
 import com.compuware.ispw.restapi.IspwRequestBean;
+import com.compuware.ispw.restapi.util.ContextPathTemplate;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 import com.compuware.ispw.restapi.util.ReflectUtils;
 
 /**
@@ -30,34 +33,22 @@ public abstract class AbstractGetAction implements IAction {
 		ispwContextPathBean.setSrid(srid);
 		bean.setIspwContextPathBean(ispwContextPathBean);
 		
-		String path = contextPath.replace("{srid}", srid);
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("srid", srid);
 
-		String[] lines = ispwRequestBody.split("\n");
-		for (String line : lines) {
-			line = StringUtils.trimToEmpty(line);
-			
-			if(line.startsWith("#")) {
-				continue;
-			}
-			
-			int indexOfEqualSign = line.indexOf("=");
-			if (indexOfEqualSign != -1) {
-				String name = StringUtils.trimToEmpty(line.substring(0, indexOfEqualSign));
-				String value =
-						StringUtils
-								.trimToEmpty(line.substring(indexOfEqualSign + 1, line.length()));
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+		while (tokenizer.nextEntry(logger)) {
+			String name = tokenizer.getKey();
+			String value = tokenizer.getValue();
 
-				if (StringUtils.isNotBlank(value)) {
-					if (pathTokens.contains(name)) {
-						path = path.replace("{" + name + "}", value);
+			if (pathTokens.contains(name)) {
+				values.put(name, value);
 
-						ReflectUtils.reflectSetter(ispwContextPathBean, name, value);
-					}
-				}
+				ReflectUtils.reflectSetter(ispwContextPathBean, name, value);
 			}
 		}
 
-		bean.setContextPath(path);
+		bean.setContextPath(ContextPathTemplate.compile(contextPath).expand(values));
 		return bean;
 
 	}
@@ -1,11 +1,14 @@
 package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
-import org.apache.commons.lang3.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
 import com.compuware.ispw.restapi.HttpMode;
 import com.compuware.ispw.restapi.IspwContextPathBean;
 import com.compuware.ispw.restapi.IspwRequestBean;
 import com.compuware.ispw.restapi.JsonProcessor;
+import com.compuware.ispw.restapi.util.ContextPathTemplate;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 import com.compuware.ispw.restapi.util.ReflectUtils;
 
 /**
@@ -30,31 +33,19 @@ public abstract class AbstractPostAction implements IAction {
 		IspwContextPathBean ispwContextPathBean = new IspwContextPathBean();
 		ispwContextPathBean.setSrid(srid);
 		bean.setIspwContextPathBean(ispwContextPathBean);
-		
-		String path = contextPath.replace("{srid}", srid);
 
-		String[] lines = ispwRequestBody.split("\n");
-		for (String line : lines) {
-			line = StringUtils.trimToEmpty(line);
-			
-			if(line.startsWith("#")) {
-				continue;
-			}
-			
-			int indexOfEqualSign = line.indexOf("=");
-			if (indexOfEqualSign != -1) {
-				String name = StringUtils.trimToEmpty(line.substring(0, indexOfEqualSign));
-				String value =
-						StringUtils
-								.trimToEmpty(line.substring(indexOfEqualSign + 1, line.length()));
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+		while (tokenizer.nextEntry(logger)) {
+			String name = tokenizer.getKey();
+			String value = tokenizer.getValue();
 
-				if (StringUtils.isNotBlank(value)) {
-					ReflectUtils.reflectSetter(jsonObject, name, value);
-				}
-			}
+			ReflectUtils.reflectSetter(jsonObject, name, value);
 		}
 
-		bean.setContextPath(path);
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("srid", srid);
+		// only srid is bound here, any other query variable stays undefined and fails the request as it always did
+		bean.setContextPath(ContextPathTemplate.compile(contextPath).expand(values, false));
 
 		JsonProcessor jsonGenerator = new JsonProcessor();
 		String jsonRequest = jsonGenerator.generate(jsonObject);
@@ -27,7 +27,7 @@ public class BuildTaskAction extends SetInfoPostAction implements IBuildAction
 {
 	private static final String[] defaultProps = new String[]{taskId, runtimeConfiguration};
 
-	private static final String contextPath = "/ispw/{srid}/build?taskId={taskId}&application={application}&assignmentId={assignmentId}" //$NON-NLS-1$
+	private static final String contextPath = "/ispw/{srid}/build?taskId={taskId*}&application={application}&assignmentId={assignmentId}" //$NON-NLS-1$
 			+ "&level={level}&mname={mname}&mtype={mtype}"; //$NON-NLS-1$
 
 	public static String getDefaultProps()
@@ -43,13 +43,8 @@ public class BuildTaskAction extends SetInfoPostAction implements IBuildAction
 	@Override
 	public IspwRequestBean getIspwRequestBean(String srid, String ispwRequestBody, WebhookToken webhookToken)
 	{
-		IspwRequestBean bean = getIspwRequestBean(srid, ispwRequestBody, webhookToken, contextPath);
-
-		String contextPath = bean.getContextPath();
-		contextPath = contextPath.replaceAll(",", "&taskId=");
-		bean.setContextPath(contextPath);
-
-		return bean;
+		// a comma separated list of task IDs expands to one taskId parameter per task
+		return getIspwRequestBean(srid, ispwRequestBody, webhookToken, contextPath);
 	}
 
 	@SuppressWarnings("nls")
@@ -2,8 +2,8 @@ package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.List;
-import org.apache.commons.lang3.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
 import com.compuware.ces.communications.service.data.EventCallback;
 import com.compuware.ces.model.BasicAuthentication;
 import com.compuware.ces.model.HttpHeader;
@@ -11,6 +11,8 @@ import com.compuware.ispw.restapi.IspwContextPathBean;
 import com.compuware.ispw.restapi.IspwRequestBean;
 import com.compuware.ispw.restapi.JsonProcessor;
 import com.compuware.ispw.restapi.WebhookToken;
+import com.compuware.ispw.restapi.util.ContextPathTemplate;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 import com.compuware.ispw.restapi.util.ReflectUtils;
 import com.compuware.ispw.restapi.util.RestApiUtils;
 
@@ -35,8 +37,8 @@ public abstract class GenericPostAction<T> extends AbstractPostAction {
 		ispwContextPathBean.setSrid(srid);
 		bean.setIspwContextPathBean(ispwContextPathBean);
 		
-		String path = contextPath.replace("{srid}", srid);
-		List<String> allParams = RestApiUtils.listAllParams(path);
+		ContextPathTemplate template = ContextPathTemplate.compile(contextPath);
+		Map<String, String> values = new HashMap<String, String>();
 		
 		T postObject = ReflectUtils.newInstance(postClazz);
 		
@@ -47,70 +49,55 @@ public abstract class GenericPostAction<T> extends AbstractPostAction {
 		EventCallback event = new EventCallback();
 		events.add(event);
 
-		String[] lines = ispwRequestBody.split("\n");
-		for (String line : lines) {
-			line = StringUtils.trimToEmpty(line);
-			
-			if(line.startsWith("#")) {
-				continue;
-			}
-			
-			int indexOfEqualSign = line.indexOf("=");
-			if (indexOfEqualSign != -1) {
-				String name = StringUtils.trimToEmpty(line.substring(0, indexOfEqualSign));
-				String value =
-						StringUtils
-								.trimToEmpty(line.substring(indexOfEqualSign + 1, line.length()));
-
-				if (StringUtils.isNotBlank(value)) {
-					if (name.equals(httpHeaders)) {
-						ArrayList<HttpHeader> httpHeaders = RestApiUtils.toHttpHeaders(value);
-						if (!httpHeaders.isEmpty()) {
-							ReflectUtils.reflectSetter(postObject, "httpHeaders", value);
-						}
-					} else if (name.equals(credentials)) {
-						BasicAuthentication auth = RestApiUtils.toBasicAuthentication(value);
-						if (auth != null) {
-							ReflectUtils.reflectSetter(postObject, "credentials", auth);
-						}
-					} else if (name.equals(eventsName)) {
-						hasEvent = true;
-						event.setName(value);
-					} else if (name.equals(eventsMethod)) {
-						hasEvent = true;
-						event.setMethod(value);
-					} else if (name.equals(eventsBody)) {
-						hasEvent = true;
-						event.setBody(value);
-					} else if (name.equals(eventsHttpHeaders)) {
-						ArrayList<HttpHeader> httpHeaders = RestApiUtils.toHttpHeaders(value);
-						if (!httpHeaders.isEmpty()) {
-							hasEvent = true;
-							event.setHttpHeaders(httpHeaders);
-						}
-					} else if (name.equals(eventsCredentials)) {
-						BasicAuthentication auth = RestApiUtils.toBasicAuthentication(value);
-						if (auth != null) {
-							hasEvent = true;
-							event.setCredentials(auth);
-						}
-					} else {
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+		while (tokenizer.nextEntry(getLogger())) {
+			String name = tokenizer.getKey();
+			String value = tokenizer.getValue();
 
-						//if the context path contains the name, replace the {name} with the true value
-						if(allParams.contains(name)) 
-						{
-							ReflectUtils.reflectSetter(ispwContextPathBean, name, value);
-							
-							//Reflect getter is necessary in here because some times
-							path = path.replace("{" + name + "}", ReflectUtils.reflectGetter(ispwContextPathBean, name));
-						}
-						
-						ReflectUtils.reflectSetter(postObject, name, value); // set the rest of the
-																				// SetInfo fields using
-																				// reflection
-					}
+			if (name.equals(httpHeaders)) {
+				ArrayList<HttpHeader> httpHeaders = RestApiUtils.toHttpHeaders(value);
+				if (!httpHeaders.isEmpty()) {
+					ReflectUtils.reflectSetter(postObject, "httpHeaders", httpHeaders);
+				}
+			} else if (name.equals(credentials)) {
+				BasicAuthentication auth = RestApiUtils.toBasicAuthentication(value);
+				if (auth != null) {
+					ReflectUtils.reflectSetter(postObject, "credentials", auth);
+				}
+			} else if (name.equals(eventsName)) {
+				hasEvent = true;
+				event.setName(value);
+			} else if (name.equals(eventsMethod)) {
+				hasEvent = true;
+				event.setMethod(value);
+			} else if (name.equals(eventsBody)) {
+				hasEvent = true;
+				event.setBody(value);
+			} else if (name.equals(eventsHttpHeaders)) {
+				ArrayList<HttpHeader> httpHeaders = RestApiUtils.toHttpHeaders(value);
+				if (!httpHeaders.isEmpty()) {
+					hasEvent = true;
+					event.setHttpHeaders(httpHeaders);
+				}
+			} else if (name.equals(eventsCredentials)) {
+				BasicAuthentication auth = RestApiUtils.toBasicAuthentication(value);
+				if (auth != null) {
+					hasEvent = true;
+					event.setCredentials(auth);
+				}
+			} else {
 
+				//if the context path contains the name, bind {name} to the true value
+				if(template.hasVariable(name)) 
+				{
+					ReflectUtils.reflectSetter(ispwContextPathBean, name, value);
+					
+					//Reflect getter is necessary in here because some times
+					values.put(name, ReflectUtils.reflectGetter(ispwContextPathBean, name));
 				}
+				
+				// set the rest of the SetInfo fields using reflection
+				ReflectUtils.reflectSetter(postObject, name, value);
 			}
 		}
 
@@ -119,7 +106,8 @@ public abstract class GenericPostAction<T> extends AbstractPostAction {
 			ReflectUtils.reflectSetter(postObject, "eventCallbacks", events);
 		}
 
-		bean.setContextPath(RestApiUtils.cleanContextPath(path));
+		values.put("srid", srid);
+		bean.setContextPath(template.expand(values));
 
 		JsonProcessor jsonGenerator = new JsonProcessor();
 		String jsonRequest = jsonGenerator.generate(postObject);
@@ -3,7 +3,6 @@ package com.compuware.ispw.restapi.action;
 import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.List;
-import org.apache.commons.lang3.StringUtils;
 import com.compuware.ispw.model.rest.WorkListInfo;
 import com.compuware.ispw.model.rest.WorkListResponse;
 import com.compuware.ispw.restapi.IspwContextPathBean;
@@ -33,26 +32,7 @@ public class GetWorkListAction extends AbstractGetAction
 	{
 
 		List<String> pathTokens = Arrays.asList(defaultProps);
-		IspwRequestBean ispwRequestBean = super.getIspwRequestBean(srid, ispwRequestBody, contextPath, pathTokens);
-		String path = ispwRequestBean.getContextPath();
-
-		// if parameters not set, remove them from query string
-
-		for (String prop : defaultProps)
-		{
-			String searchVal = prop + "={" + prop + "}"; //$NON-NLS-1$ //$NON-NLS-2$
-			path = path.replace(searchVal, StringUtils.EMPTY);
-		}
-
-		path = path.replaceAll("[&]+", "&"); //$NON-NLS-1$ //$NON-NLS-2$
-		if (path.endsWith("&")) //$NON-NLS-1$
-		{
-			path = path.substring(0, path.length() - 1);
-		}
-
-		ispwRequestBean.setContextPath(path);
-
-		return ispwRequestBean;
+		return super.getIspwRequestBean(srid, ispwRequestBody, contextPath, pathTokens);
 	}
 
 	@Override
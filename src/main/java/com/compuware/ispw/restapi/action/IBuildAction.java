@@ -11,12 +11,11 @@
 package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 import com.compuware.ispw.restapi.BuildParms;
 import com.compuware.ispw.restapi.IspwRequestBean;
 import com.compuware.ispw.restapi.WebhookToken;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 import com.compuware.ispw.restapi.util.RestApiUtils;
 import hudson.FilePath;
 
@@ -27,6 +26,12 @@ public interface IBuildAction extends IAction
 {
 	public static String BUILD_PARAM_FILE_NAME = "automaticBuildParams.txt"; //$NON-NLS-1$
 
+	/**
+	 * Lines starting with these keys, case insensitive, are replaced with the parameters read from the file
+	 */
+	public static String[] BUILD_PARM_KEYS = new String[]{"application", "assignmentid", "releaseid", "taskid", "mname", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			"mtype", "level"}; //$NON-NLS-1$ //$NON-NLS-2$
+
 	/**
 	 * Reads the given request body to find out if the parameters of the build should taken form the request body, or if they
 	 * should be read from a file. If the "buildautomatically" parameter is specified in the given body, the build parameters
@@ -43,72 +48,76 @@ public interface IBuildAction extends IAction
 	 */
 	public default String getRequestBody(String ispwRequestBody, FilePath buildParmPath, PrintStream logger)
 	{
-		String buildAutomaticallyRegex = "(?i)(?m)(^(?!#)(.+)?buildautomatically.+true(.+)?$)"; //$NON-NLS-1$
-		Pattern buildAutomaticallyPattern = Pattern.compile(buildAutomaticallyRegex,
-				Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-		if (ispwRequestBody != null)
+		// if a line of the body contains "buildautomatically" and "true" case insensitive, and the line is not a comment.
+		if (ispwRequestBody != null && buildParmPath != null
+				&& RequestBodyTokenizer.isBuildAutomatically(ispwRequestBody))
 		{
-			Matcher buildAutomaticallyMatcher = buildAutomaticallyPattern.matcher(ispwRequestBody);
-			if (buildAutomaticallyMatcher.find() && buildParmPath != null)
+			BuildParms buildParms = null;
+			try
 			{
-				ispwRequestBody = buildAutomaticallyMatcher.replaceAll(StringUtils.EMPTY);
+				logger.println("Build parameters will automatically be retrieved from file " + buildParmPath.toURI());
 
-				try
+				String jsonString = buildParmPath.readToString();
+				if (jsonString != null && !jsonString.isEmpty())
 				{
-					// if a line of the body contains "buildautomatically" and "true" case insensitive, and the line is not a
-					// comment.
-					// File parmFile = new File(buildParmPath, BUILD_PARAM_FILE_NAME);
-					logger.println("Build parameters will automatically be retrieved from file " + buildParmPath.toURI());
+					buildParms = BuildParms.parse(jsonString);
+				}
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
 
-					String jsonString = buildParmPath.readToString();
-					BuildParms buildParms = null;
-					if (jsonString != null && !jsonString.isEmpty())
-					{
-						buildParms = BuildParms.parse(jsonString);
-					}
-					if (buildParms != null)
-					{
-						// Remove any line that is not a comment and contains application, assignmentid, releaseid, taskid,
-						// mname, mtype, or level. These parms will be replaced with parms from the file.
-						String linesToReplaceRegex = "(?i)(^(?!#)( +)?(application|assignmentid|releaseid|taskid|mname|mtype|level)(.+)?$)"; //$NON-NLS-1$
-						Pattern linesToReplacePattern = Pattern.compile(linesToReplaceRegex,
-								Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-						Matcher linesToReplaceMatcher = linesToReplacePattern.matcher(ispwRequestBody);
-						ispwRequestBody = linesToReplaceMatcher.replaceAll(StringUtils.EMPTY);
+			StringBuilder requestBodyBuilder = new StringBuilder();
+			if (buildParms != null)
+			{
+				if (buildParms.getContainerId() != null)
+				{
+					requestBodyBuilder.append("assignmentId = ").append(buildParms.getContainerId()).append('\n');
+				}
+				if (buildParms.getTaskLevel() != null)
+				{
+					requestBodyBuilder.append("level = ").append(buildParms.getTaskLevel()).append('\n');
+				}
+				if (buildParms.getReleaseId() != null)
+				{
+					requestBodyBuilder.append("releaseId = ").append(buildParms.getReleaseId()).append('\n');
+				}
+				if (buildParms.getTaskIds() != null && !buildParms.getTaskIds().isEmpty())
+				{
+					requestBodyBuilder.append("taskId = ");
+					requestBodyBuilder.append(StringUtils.join(buildParms.getTaskIds(), ',')).append('\n');
+				}
+			}
 
-						StringBuilder requestBodyBuilder = new StringBuilder();
-						if (buildParms.getContainerId() != null)
-						{
-							requestBodyBuilder.append("assignmentId = " + buildParms.getContainerId());
-						}
-						if (buildParms.getTaskLevel() != null)
-						{
-							requestBodyBuilder.append("\nlevel = " + buildParms.getTaskLevel());
-						}
-						if (buildParms.getReleaseId() != null)
+			// the original request body may still contain webhook event information, keep everything except the
+			// buildautomatically line and, if the file had parameters, any line setting a parameter taken from the file.
+			RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+			while (tokenizer.next())
+			{
+				switch (tokenizer.getKind())
+				{
+					case BLANK:
+						continue;
+					case BUILD_AUTOMATICALLY:
+						if ("true".equals(tokenizer.getValue()))
 						{
-							requestBodyBuilder.append("\nreleaseId = " + buildParms.getReleaseId());
+							continue;
 						}
-						if (buildParms.getTaskIds() != null && !buildParms.getTaskIds().isEmpty())
+						break;
+					case COMMENT:
+						break;
+					default:
+						if (buildParms != null
+								&& StringUtils.startsWithAny(tokenizer.getLine().toLowerCase(), BUILD_PARM_KEYS))
 						{
-							requestBodyBuilder.append("\ntaskId = ");
-							for (String taskId : buildParms.getTaskIds())
-							{
-								requestBodyBuilder.append(taskId + ",");
-							}
-							requestBodyBuilder.deleteCharAt(requestBodyBuilder.length() - 1); // remove last comma
+							continue;
 						}
-						requestBodyBuilder.append(ispwRequestBody); // the original request body may still contain webhook event
-																	// information.
-						ispwRequestBody = requestBodyBuilder.toString();
-					}
-
-				}
-				catch (Exception e)
-				{
-					e.printStackTrace();
+						break;
 				}
+				requestBodyBuilder.append(tokenizer.getLine()).append('\n');
 			}
+			ispwRequestBody = requestBodyBuilder.toString();
 		}
 		if (RestApiUtils.isIspwDebugMode())
 		{
@@ -0,0 +1,161 @@
+package com.compuware.ispw.restapi.action;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+
+/**
+ * Immutable registry of all ISPW commands defined in {@link IspwCommand}. The annotated fields are scanned once, and
+ * each action class gets a constructor handle taking the build log, so instantiating an action is a map lookup plus a
+ * direct constructor call.
+ */
+public final class IspwActionRegistry
+{
+	private static Logger logger = Logger.getLogger(IspwActionRegistry.class);
+
+	private static final MethodType FACTORY_TYPE = MethodType.methodType(IAction.class, PrintStream.class);
+
+	private final Map<String, ActionFactory> factories;
+	private final List<String> publishedCommands;
+
+	/**
+	 * Creates an action instance writing to the given build log
+	 */
+	public static final class ActionFactory
+	{
+		private final Class<?> actionClass;
+		private final MethodHandle constructor;
+
+		private ActionFactory(Class<?> actionClass, MethodHandle constructor)
+		{
+			this.actionClass = actionClass;
+			this.constructor = constructor;
+		}
+
+		public Class<?> getActionClass()
+		{
+			return actionClass;
+		}
+
+		public IAction create(PrintStream log) throws Exception
+		{
+			try
+			{
+				return (IAction) constructor.invokeExact(log);
+			}
+			catch (Exception | Error e)
+			{
+				throw e;
+			}
+			catch (Throwable e)
+			{
+				// a constructor only throws exceptions and errors
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static class Holder
+	{
+		private static final IspwActionRegistry INSTANCE = new IspwActionRegistry(IspwCommand.class);
+	}
+
+	IspwActionRegistry(Class<?> commandClass)
+	{
+		Map<String, ActionFactory> factories = new LinkedHashMap<>();
+		List<String> publishedCommands = new ArrayList<>();
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+		for (Field field : commandClass.getDeclaredFields())
+		{
+			IspwAction ispwAction = field.getAnnotation(IspwAction.class);
+			if (ispwAction == null || !Modifier.isStatic(field.getModifiers()) || field.getType() != String.class)
+			{
+				continue;
+			}
+
+			Class<?> clazz = ispwAction.clazz();
+			String message = String.format("Failed to register command in field: %s, clazz: %s", field.getName(),
+					clazz.getName());
+			if (!IAction.class.isAssignableFrom(clazz))
+			{
+				// asType would accept the cast, every instantiation would fail instead
+				logger.error(message + ", the class does not implement " + IAction.class.getName());
+				continue;
+			}
+
+			String command;
+			MethodHandle constructor;
+			try
+			{
+				command = (String) field.get(null);
+				constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class, PrintStream.class))
+						.asType(FACTORY_TYPE);
+			}
+			catch (IllegalAccessException | NoSuchMethodException | WrongMethodTypeException e)
+			{
+				logger.error(message, e);
+				continue;
+			}
+
+			// a command defined twice resolves to the last definition
+			factories.put(command, new ActionFactory(clazz, constructor));
+			if (ispwAction.exposed() && !publishedCommands.contains(command))
+			{
+				publishedCommands.add(command);
+			}
+		}
+
+		Collections.sort(publishedCommands);
+
+		this.factories = Collections.unmodifiableMap(factories);
+		this.publishedCommands = Collections.unmodifiableList(publishedCommands);
+	}
+
+	/**
+	 * @return the registry of the commands defined in {@link IspwCommand}
+	 */
+	public static IspwActionRegistry get()
+	{
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Build the registry while Jenkins starts, so the first build does not pay for it
+	 */
+	@Initializer(after = InitMilestone.PLUGINS_STARTED)
+	public static void init()
+	{
+		logger.info("Registered " + get().factories.size() + " ISPW commands");
+	}
+
+	/**
+	 * @param command
+	 *            the ISPW command
+	 * @return the factory of the action class of the command, null if the command is unknown
+	 */
+	public ActionFactory getFactory(String command)
+	{
+		return command == null ? null : factories.get(command);
+	}
+
+	/**
+	 * @return the exposed commands in alphabetical order
+	 */
+	public List<String> getPublishedCommands()
+	{
+		return publishedCommands;
+	}
+}
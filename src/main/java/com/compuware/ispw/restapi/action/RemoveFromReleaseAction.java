@@ -1,13 +1,16 @@
 package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
-import org.apache.commons.lang3.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
 import com.compuware.ispw.model.rest.MultiTaskInfoResponse;
 import com.compuware.ispw.restapi.HttpMode;
 import com.compuware.ispw.restapi.IspwContextPathBean;
 import com.compuware.ispw.restapi.IspwRequestBean;
 import com.compuware.ispw.restapi.JsonProcessor;
 import com.compuware.ispw.restapi.WebhookToken;
+import com.compuware.ispw.restapi.util.ContextPathTemplate;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 
 /**
  * Action to remove one or more tasks from an ISPW release.
@@ -34,62 +37,44 @@ public class RemoveFromReleaseAction extends AbstractPostAction implements IActi
 		ispwContextPathBean.setSrid(srid);
 		bean.setIspwContextPathBean(ispwContextPathBean);
 
-		String path = CONTEXT_PATH.replace("{srid}", srid);
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("srid", srid);
 
-		String[] lines = ispwRequestBody.split("\n");
-		for (String line : lines)
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+		while (tokenizer.nextEntry(getLogger()))
 		{
-			line = StringUtils.trimToEmpty(line);
+			String name = tokenizer.getKey();
+			String value = tokenizer.getValue();
 
-			if (line.startsWith("#"))
+			if (name.equals(releaseId))
 			{
-				continue;
+				values.put(releaseId, value);
+				ispwContextPathBean.setReleaseId(value);
 			}
-
-			int indexOfEqualSign = line.indexOf("=");
-			if (indexOfEqualSign != -1)
+			else if (name.equals(level))
+			{
+				values.put(level, value);
+				ispwContextPathBean.setLevel(value);
+			}
+			else if (name.equals(mname))
+			{
+				values.put(mname, value);
+				ispwContextPathBean.setMname(value);
+			}
+			else if (name.equals(mtype))
+			{
+				values.put(mtype, value);
+				ispwContextPathBean.setMtype(value);
+			}
+			else if (name.equals(taskId))
 			{
-				String name = StringUtils.trimToEmpty(line.substring(0, indexOfEqualSign));
-				String value = StringUtils.trimToEmpty(line.substring(indexOfEqualSign + 1, line.length()));
-
-				if (StringUtils.isNotBlank(value))
-				{
-					if (name.equals(releaseId))
-					{
-						path = path.replace("{" + releaseId + "}", value);
-						ispwContextPathBean.setReleaseId(value);
-					}
-					else if (name.equals(level))
-					{
-						path = path.replace("{" + level + "}", value);
-						ispwContextPathBean.setLevel(value);
-					}
-					else if (name.equals(mname))
-					{
-						path = path.replace("{" + mname + "}", value);
-						ispwContextPathBean.setMname(value);
-					}
-					else if (name.equals(mtype))
-					{
-						path = path.replace("{" + mtype + "}", value);
-						ispwContextPathBean.setMtype(value);
-					}
-					else if (name.equals(taskId))
-					{
-						path = path.replace("{" + taskId + "}", value);
-						ispwContextPathBean.setTaskId(value);
-					}
-				}
+				values.put(taskId, value);
+				ispwContextPathBean.setTaskId(value);
 			}
 		}
 
-		// if level/mname/mtype/taskId are not set, remove them from query string
-		path = path.replace("level={level}", StringUtils.EMPTY);
-		path = path.replace("&mname={mname}", StringUtils.EMPTY);
-		path = path.replace("&mtype={mtype}", StringUtils.EMPTY);
-		path = path.replace("&taskId={taskId}", StringUtils.EMPTY);
-
-		bean.setContextPath(path);
+		// level/mname/mtype/taskId are left out of the query string when not set
+		bean.setContextPath(ContextPathTemplate.compile(CONTEXT_PATH).expand(values));
 
 		return bean;
 	}
@@ -1,13 +1,16 @@
 package com.compuware.ispw.restapi.action;
 
 import java.io.PrintStream;
-import org.apache.commons.lang3.StringUtils;
+import java.util.HashMap;
+import java.util.Map;
 import com.compuware.ispw.model.rest.MultiTaskInfoResponse;
 import com.compuware.ispw.model.rest.TransferTaskInfo;
 import com.compuware.ispw.restapi.IspwContextPathBean;
 import com.compuware.ispw.restapi.IspwRequestBean;
 import com.compuware.ispw.restapi.JsonProcessor;
 import com.compuware.ispw.restapi.WebhookToken;
+import com.compuware.ispw.restapi.util.ContextPathTemplate;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer;
 import com.compuware.ispw.restapi.util.ReflectUtils;
 
 /**
@@ -35,69 +38,51 @@ public class TransferTaskAction extends AbstractPostAction implements IAction
 		ispwContextPathBean.setSrid(srid);
 		bean.setIspwContextPathBean(ispwContextPathBean);
 
-		String path = contextPath.replace("{srid}", srid);
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("srid", srid);
 		TransferTaskInfo transferTaskInfo = new TransferTaskInfo();
 		bean.setJsonObject(transferTaskInfo);
 
-		String[] lines = ispwRequestBody.split("\n");
-		for (String line : lines)
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+		while (tokenizer.nextEntry(getLogger()))
 		{
-			line = StringUtils.trimToEmpty(line);
+			String name = tokenizer.getKey();
+			String value = tokenizer.getValue();
 
-			if (line.startsWith("#"))
+			if (name.equals(assignmentId))
 			{
-				continue;
+				values.put(assignmentId, value);
+				ispwContextPathBean.setAssignmentId(value);
 			}
-
-			int indexOfEqualSign = line.indexOf("=");
-			if (indexOfEqualSign != -1)
+			else if (name.equals(level))
 			{
-				String name = StringUtils.trimToEmpty(line.substring(0, indexOfEqualSign));
-				String value = StringUtils.trimToEmpty(line.substring(indexOfEqualSign + 1, line.length()));
-
-				if (StringUtils.isNotBlank(value))
-				{
-					if (name.equals(assignmentId))
-					{
-						path = path.replace("{" + assignmentId + "}", value);
-						ispwContextPathBean.setAssignmentId(value);
-					}
-					else if (name.equals(level))
-					{
-						path = path.replace("{" + level + "}", value);
-						ispwContextPathBean.setLevel(value);
-					}
-					else if (name.equals(mname))
-					{
-						path = path.replace("{" + mname + "}", value);
-						ispwContextPathBean.setMname(value);
-					}
-					else if (name.equals(mtype))
-					{
-						path = path.replace("{" + mtype + "}", value);
-						ispwContextPathBean.setMtype(value);
-					}
-					else if (name.equals(taskId))
-					{
-						path = path.replace("{" + taskId + "}", value);
-						ispwContextPathBean.setTaskId(value);
-					}
-					else
-					{
-						// set the rest of the TransferTaskInfo fields using reflection
-						ReflectUtils.reflectSetter(transferTaskInfo, name, value);
-					}
-				}
+				values.put(level, value);
+				ispwContextPathBean.setLevel(value);
+			}
+			else if (name.equals(mname))
+			{
+				values.put(mname, value);
+				ispwContextPathBean.setMname(value);
+			}
+			else if (name.equals(mtype))
+			{
+				values.put(mtype, value);
+				ispwContextPathBean.setMtype(value);
+			}
+			else if (name.equals(taskId))
+			{
+				values.put(taskId, value);
+				ispwContextPathBean.setTaskId(value);
+			}
+			else
+			{
+				// set the rest of the TransferTaskInfo fields using reflection
+				ReflectUtils.reflectSetter(transferTaskInfo, name, value);
 			}
 		}
 
-		// if level/mname/mtype/taskId are not set, remove them from query string
-		path = path.replace("level={level}", StringUtils.EMPTY);
-		path = path.replace("&mname={mname}", StringUtils.EMPTY);
-		path = path.replace("&mtype={mtype}", StringUtils.EMPTY);
-		path = path.replace("&taskId={taskId}", StringUtils.EMPTY);
-
-		bean.setContextPath(path);
+		// level/mname/mtype/taskId are left out of the query string when not set
+		bean.setContextPath(ContextPathTemplate.compile(contextPath).expand(values));
 
 		JsonProcessor jsonGenerator = new JsonProcessor();
 		String jsonRequest = jsonGenerator.generate(transferTaskInfo);
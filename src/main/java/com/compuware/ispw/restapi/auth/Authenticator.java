@@ -4,9 +4,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.HttpContext;
 
 /**
@@ -16,6 +15,20 @@ public interface Authenticator extends Serializable {
 
 	String getKeyName();
 
-	CloseableHttpClient authenticate(HttpClientBuilder clientBuilder, HttpContext context, HttpRequestBase requestBase,
+	/**
+	 * Prepare the given context so that requests executed with it are authenticated. The client is shared across
+	 * requests, so any authentication state must be kept in the context, never in the client.
+	 */
+	void authenticate(HttpClient client, HttpContext context, HttpRequestBase requestBase,
 					  PrintStream logger) throws IOException, InterruptedException;
+
+	/**
+	 * Called when the server answered a request authenticated with the given context with 401 or 403. Authenticators
+	 * which reuse a session across requests drop it here.
+	 *
+	 * @return true if authenticating again may help and the request should be sent once more
+	 */
+	default boolean onRejected(HttpContext context, HttpRequestBase requestBase) {
+		return false;
+	}
 }
@@ -2,9 +2,8 @@ package com.compuware.ispw.restapi.auth;
 
 import java.io.PrintStream;
 
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.HttpContext;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -50,9 +49,9 @@ public class BasicDigestAuthentication extends AbstractDescribableImpl<BasicDige
     }
 
 	@Override
-	public CloseableHttpClient authenticate(HttpClientBuilder clientBuilder, HttpContext context,
-											HttpRequestBase requestBase, PrintStream logger) {
-		return CredentialBasicAuthentication.auth(clientBuilder, context, requestBase, userName, password);
+	public void authenticate(HttpClient client, HttpContext context,
+							 HttpRequestBase requestBase, PrintStream logger) {
+		CredentialBasicAuthentication.auth(context, requestBase, userName, password);
 	}
 
     @Extension
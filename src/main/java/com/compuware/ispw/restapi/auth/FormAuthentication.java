@@ -6,11 +6,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
@@ -30,6 +35,8 @@ public class FormAuthentication extends AbstractDescribableImpl<FormAuthenticati
         implements Authenticator {
 
 	private static final long serialVersionUID = -4370238820437831639L;
+	private static final String SESSION_ATTRIBUTE = FormAuthentication.class.getName() + ".session";
+
 	private final String keyName;
     private final List<RequestAction> actions;
 
@@ -48,21 +55,49 @@ public class FormAuthentication extends AbstractDescribableImpl<FormAuthenticati
     }
 
 	@Override
-	public CloseableHttpClient authenticate(HttpClientBuilder clientBuilder, HttpContext context,
-								   HttpRequestBase requestBase, PrintStream logger) throws IOException, InterruptedException {
-		CloseableHttpClient client = clientBuilder.build();
+	public void authenticate(HttpClient client, HttpContext context,
+							 HttpRequestBase requestBase, PrintStream logger) throws IOException, InterruptedException {
+		// log in once per host and reuse the session cookies until they expire or are rejected
+		FormSessionCache.Session session = FormSessionCache.getSession(keyName, toHost(requestBase),
+				cookieStore -> login(client, cookieStore, logger));
+		context.setAttribute(HttpClientContext.COOKIE_STORE, session.getCookieStore());
+		context.setAttribute(SESSION_ATTRIBUTE, session);
+	}
+
+	@Override
+	public boolean onRejected(HttpContext context, HttpRequestBase requestBase) {
+		Object session = context.getAttribute(SESSION_ATTRIBUTE);
+		if (!(session instanceof FormSessionCache.Session)) {
+			return false;
+		}
+		FormSessionCache.invalidate(keyName, toHost(requestBase), (FormSessionCache.Session) session);
+		context.removeAttribute(SESSION_ATTRIBUTE);
+		return true;
+	}
+
+	private void login(HttpClient client, CookieStore cookieStore, PrintStream logger)
+			throws IOException, InterruptedException {
+		HttpContext context = new BasicHttpContext();
+		context.setAttribute(HttpClientContext.COOKIE_STORE, cookieStore);
+
 		final HttpClientUtil clientUtil = new HttpClientUtil();
 		for (RequestAction requestAction : actions) {
 			final HttpRequestBase method = clientUtil.createRequestBase(requestAction);
 
 			final HttpResponse execute = clientUtil.execute(client, context, method, logger);
+			// release the pooled connection before the next request
+			EntityUtils.consumeQuietly(execute.getEntity());
 			//from 400(client error) to 599(server error)
 			if ((execute.getStatusLine().getStatusCode() >= 400
 					&& execute.getStatusLine().getStatusCode() <= 599)) {
 				throw new IllegalStateException("Error doing authentication");
 			}
 		}
-		return client;
+	}
+
+	private static String toHost(HttpRequestBase requestBase) {
+		HttpHost host = URIUtils.extractHost(requestBase.getURI());
+		return host != null ? host.toURI() : String.valueOf(requestBase.getURI());
 	}
 
     @Extension
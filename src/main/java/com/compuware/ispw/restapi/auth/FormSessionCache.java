@@ -0,0 +1,141 @@
+package com.compuware.ispw.restapi.auth;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+
+/**
+ * Sessions of form authentications, kept per key name and host so that consecutive requests, e.g. the polls of a set,
+ * log in once and then reuse the session cookies. A session is dropped when it expires, when all of its cookies
+ * expired, or when the server rejects a request made with it. Concurrent builds share a session; only one of them logs
+ * in while the others wait for the new session.
+ */
+public class FormSessionCache {
+
+	private static final String PROPERTY_PREFIX = FormSessionCache.class.getName();
+
+	static final long SESSION_TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".sessionTtlMillis",
+			TimeUnit.MINUTES.toMillis(30));
+
+	private static final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+	/**
+	 * Logs in, storing the session cookies in the given store
+	 */
+	public interface Login {
+
+		void login(CookieStore cookieStore) throws IOException, InterruptedException;
+	}
+
+	/**
+	 * The cookies of one login
+	 */
+	public static class Session {
+		private final CookieStore cookieStore;
+		private final long expiresAt;
+
+		private Session(CookieStore cookieStore, long expiresAt) {
+			this.cookieStore = cookieStore;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * @return the cookies of the session, shared by all requests using it
+		 */
+		public CookieStore getCookieStore() {
+			return cookieStore;
+		}
+
+		private boolean isValid(long now) {
+			if (now >= expiresAt) {
+				return false;
+			}
+			// a login without cookies keeps no session worth reusing
+			cookieStore.clearExpired(new Date(now));
+			return !cookieStore.getCookies().isEmpty();
+		}
+	}
+
+	private FormSessionCache() {
+	}
+
+	/**
+	 * @param keyName
+	 *            the key name of the form authentication
+	 * @param host
+	 *            the target of the requests, scheme://host:port
+	 * @param login
+	 *            logs in if there is no valid session
+	 * @return a valid session
+	 * @throws IOException
+	 *             if the login failed
+	 * @throws InterruptedException
+	 *             if interrupted while logging in
+	 */
+	public static Session getSession(String keyName, String host, Login login)
+			throws IOException, InterruptedException {
+		String key = toKey(keyName, host);
+		Session session = sessions.get(key);
+		if (session != null && session.isValid(System.currentTimeMillis())) {
+			return session;
+		}
+
+		synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+			// another build may have logged in meanwhile
+			session = sessions.get(key);
+			long now = System.currentTimeMillis();
+			if (session != null && session.isValid(now)) {
+				return session;
+			}
+
+			CookieStore cookieStore = new BasicCookieStore();
+			login.login(cookieStore);
+			session = new Session(cookieStore, expiresAt(cookieStore, now));
+			sessions.put(key, session);
+			return session;
+		}
+	}
+
+	/**
+	 * Drop a session the server rejected, does nothing if another build already replaced it
+	 *
+	 * @param keyName
+	 *            the key name of the form authentication
+	 * @param host
+	 *            the target of the requests, scheme://host:port
+	 * @param session
+	 *            the rejected session
+	 */
+	public static void invalidate(String keyName, String host, Session session) {
+		sessions.remove(toKey(keyName, host), session);
+	}
+
+	/**
+	 * Drop all sessions, e.g. after the form authentications were reconfigured
+	 */
+	public static void clear() {
+		sessions.clear();
+	}
+
+	private static String toKey(String keyName, String host) {
+		return keyName + '\n' + host;
+	}
+
+	// the session ends with its first cookie, but never lasts longer than the configured time to live
+	private static long expiresAt(CookieStore cookieStore, long now) {
+		long expiresAt = now + SESSION_TTL_MILLIS;
+		for (Cookie cookie : cookieStore.getCookies()) {
+			Date expiry = cookie.getExpiryDate();
+			if (expiry != null) {
+				expiresAt = Math.min(expiresAt, expiry.getTime());
+			}
+		}
+		return expiresAt;
+	}
+}
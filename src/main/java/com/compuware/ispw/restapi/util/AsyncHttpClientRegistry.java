@@ -0,0 +1,130 @@
+package com.compuware.ispw.restapi.util;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.log4j.Logger;
+import hudson.init.Terminator;
+
+/**
+ * Registry of non-blocking HTTP clients shared by all ISPW requests sent on the asynchronous transport. There is one
+ * client per trust mode, see {@link SslSocketFactoryRegistry}; each runs a few I/O threads which serve all requests
+ * of the trust mode, however many are in flight. Proxy and timeouts are set per request, see
+ * {@link #requestConfig(HttpHost, int)}.
+ * <p>
+ * Clients handed out by this registry are shared and must never be closed by the caller.
+ */
+public class AsyncHttpClientRegistry {
+
+	private static Logger logger = Logger.getLogger(AsyncHttpClientRegistry.class);
+
+	private static final String PROPERTY_PREFIX = AsyncHttpClientRegistry.class.getName();
+
+	static final int IO_THREADS = Integer.getInteger(PROPERTY_PREFIX + ".ioThreads", 2);
+	static final int MAX_TOTAL = Integer.getInteger(PROPERTY_PREFIX + ".maxTotal", 200);
+	static final int MAX_PER_ROUTE = Integer.getInteger(PROPERTY_PREFIX + ".maxPerRoute", 50);
+
+	private static final ConcurrentMap<String, CloseableHttpAsyncClient> clients = new ConcurrentHashMap<>();
+
+	private AsyncHttpClientRegistry() {
+	}
+
+	/**
+	 * Get the shared client for the given request target, creating and starting it on first use.
+	 *
+	 * @param url
+	 *            the request URL, only its host decides the trust mode
+	 * @param ignoreSslErrors
+	 *            true to trust any certificate and host name
+	 * @return a shared, running client, never close it
+	 */
+	public static CloseableHttpAsyncClient getClient(URL url, boolean ignoreSslErrors) {
+		String trustMode = SslSocketFactoryRegistry.getTrustMode(url.getHost(), ignoreSslErrors);
+
+		CloseableHttpAsyncClient client = clients.get(trustMode);
+		if (client == null) {
+			client = clients.computeIfAbsent(trustMode, AsyncHttpClientRegistry::createClient);
+			if (RestApiUtils.isIspwDebugMode())
+				logger.info("Created asynchronous HTTP client for trust mode " + trustMode);
+		}
+
+		return client;
+	}
+
+	/**
+	 * @param httpProxy
+	 *            the proxy, may be null
+	 * @param timeout
+	 *            timeout in seconds, 0 or less for the client defaults
+	 * @return the configuration of one request
+	 */
+	public static RequestConfig requestConfig(HttpHost httpProxy, int timeout) {
+		RequestConfig.Builder config = RequestConfig.custom();
+		if (timeout > 0) {
+			int t = timeout * 1000;
+			config.setSocketTimeout(t).setConnectTimeout(t).setConnectionRequestTimeout(t);
+		}
+		if (httpProxy != null) {
+			config.setProxy(httpProxy);
+		}
+		return config.build();
+	}
+
+	/**
+	 * Close all clients. Any client obtained before is no longer usable afterwards.
+	 */
+	public static void closeAll() {
+		for (String key : clients.keySet()) {
+			CloseableHttpAsyncClient client = clients.remove(key);
+			if (client != null) {
+				try {
+					client.close();
+				} catch (Exception x) {
+					logger.warn("Failed to close asynchronous HTTP client for " + key, x);
+				}
+			}
+		}
+	}
+
+	@Terminator
+	public static void shutdown() {
+		closeAll();
+	}
+
+	private static CloseableHttpAsyncClient createClient(String trustMode) {
+		Registry<SchemeIOSessionStrategy> strategies = RegistryBuilder.<SchemeIOSessionStrategy> create()
+				.register("http", NoopIOSessionStrategy.INSTANCE)
+				.register("https", new SSLIOSessionStrategy(SslSocketFactoryRegistry.getSslContext(trustMode),
+						SslSocketFactoryRegistry.getHostnameVerifier(trustMode)))
+				.build();
+
+		PoolingNHttpClientConnectionManager connectionManager;
+		try {
+			IOReactorConfig reactorConfig = IOReactorConfig.custom().setIoThreadCount(IO_THREADS).build();
+			connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig),
+					strategies);
+		} catch (IOReactorException e) {
+			throw new IllegalStateException(e);
+		}
+		connectionManager.setMaxTotal(MAX_TOTAL);
+		connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+
+		CloseableHttpAsyncClient client = HttpAsyncClients.custom().useSystemProperties()
+				.setConnectionManager(connectionManager).build();
+		client.start();
+		return client;
+	}
+}
@@ -0,0 +1,122 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a request body into a string, up to a maximum number of characters. The bytes are decoded as they arrive
+ * into buffers kept per thread, so a body is read without intermediate copies, and reading stops as soon as the body is
+ * too large.
+ */
+public final class BoundedBodyReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final ThreadLocal<ByteBuffer> byteBuffers = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+	private static final ThreadLocal<CharBuffer> charBuffers = ThreadLocal
+			.withInitial(() -> CharBuffer.allocate(BUFFER_SIZE));
+
+	/**
+	 * Thrown when the body is larger than allowed
+	 */
+	public static class PayloadTooLargeException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public PayloadTooLargeException(int maxChars) {
+			super("Request body exceeds " + maxChars + " characters"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private BoundedBodyReader() {
+	}
+
+	/**
+	 * @param in
+	 *            the body
+	 * @param charsetName
+	 *            the character encoding of the body, UTF-8 if null or unknown
+	 * @param maxChars
+	 *            the maximum number of characters
+	 * @return the body
+	 * @throws PayloadTooLargeException
+	 *             if the body has more than maxChars characters
+	 * @throws IOException
+	 *             if the body cannot be read or decoded
+	 */
+	public static String read(InputStream in, String charsetName, int maxChars) throws IOException {
+		CharsetDecoder decoder = charset(charsetName).newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+
+		ByteBuffer bytes = byteBuffers.get();
+		CharBuffer chars = charBuffers.get();
+		// Buffer methods are called through Buffer, a Java 8 controller lacks their covariant overrides
+		((Buffer) bytes).clear();
+		StringBuilder sb = new StringBuilder();
+
+		boolean endOfInput = false;
+		while (!endOfInput) {
+			int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+			if (read < 0) {
+				endOfInput = true;
+			} else {
+				((Buffer) bytes).position(bytes.position() + read);
+			}
+
+			((Buffer) bytes).flip();
+			decode(decoder, bytes, chars, endOfInput, sb, maxChars);
+			// keep an incomplete multi-byte sequence for the next read
+			bytes.compact();
+		}
+
+		CoderResult result;
+		do {
+			((Buffer) chars).clear();
+			result = decoder.flush(chars);
+			append(chars, sb, maxChars);
+		} while (result.isOverflow());
+
+		return sb.toString();
+	}
+
+	private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput,
+			StringBuilder sb, int maxChars) throws IOException {
+		CoderResult result;
+		do {
+			((Buffer) chars).clear();
+			result = decoder.decode(bytes, chars, endOfInput);
+			if (result.isError()) {
+				result.throwException();
+			}
+			append(chars, sb, maxChars);
+		} while (result.isOverflow());
+	}
+
+	private static void append(CharBuffer chars, StringBuilder sb, int maxChars) throws PayloadTooLargeException {
+		((Buffer) chars).flip();
+		if (sb.length() + chars.remaining() > maxChars) {
+			throw new PayloadTooLargeException(maxChars);
+		}
+		sb.append(chars);
+	}
+
+	private static Charset charset(String charsetName) {
+		if (charsetName != null) {
+			try {
+				return Charset.forName(charsetName);
+			} catch (IllegalArgumentException e) {
+				// fall back to UTF-8
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+}
@@ -0,0 +1,292 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.log4j.Logger;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Compression of the bodies exchanged with CES. Task lists and worklists are highly repetitive JSON which compresses
+ * very well, so every request accepts gzip and deflate responses, and a compressed response is decompressed as it is
+ * read, never as a whole. Both the blocking and the non-blocking transport go through here, so they negotiate and
+ * count the same way.
+ * <p>
+ * Request bodies of at least <code>com.compuware.ispw.restapi.util.ContentEncoding.compressThreshold</code> bytes are
+ * sent gzip compressed when <code>com.compuware.ispw.restapi.util.ContentEncoding.compressRequests=true</code>; only
+ * enable it for a CES which accepts compressed requests.
+ */
+public final class ContentEncoding {
+
+	private static Logger logger = Logger.getLogger(ContentEncoding.class);
+
+	private static final String PROPERTY_PREFIX = ContentEncoding.class.getName();
+
+	static final boolean COMPRESS_REQUESTS = Boolean.getBoolean(PROPERTY_PREFIX + ".compressRequests");
+	static final int COMPRESS_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + ".compressThreshold", 64 * 1024);
+
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+	static final String ACCEPT_ENCODING = GZIP + ", " + DEFLATE;
+
+	private static final AtomicLong decodedResponses = new AtomicLong();
+	private static final AtomicLong responseBytesReceived = new AtomicLong();
+	private static final AtomicLong responseBytesDecoded = new AtomicLong();
+	private static final AtomicLong compressedRequests = new AtomicLong();
+	private static final AtomicLong requestBytes = new AtomicLong();
+	private static final AtomicLong requestBytesSent = new AtomicLong();
+
+	private ContentEncoding() {
+	}
+
+	/**
+	 * Accept compressed responses, unless the request already says which encodings it accepts
+	 *
+	 * @param request
+	 *            the request
+	 */
+	public static void acceptCompressed(HttpRequest request) {
+		if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+		}
+	}
+
+	/**
+	 * @param entity
+	 *            the body of a request, may be null
+	 * @return the body gzip compressed if compressing requests is enabled and the body is large enough, otherwise the
+	 *         given body
+	 * @throws IOException
+	 *             if the body cannot be compressed
+	 */
+	public static HttpEntity compress(HttpEntity entity) throws IOException {
+		if (!COMPRESS_REQUESTS || entity == null || entity.getContentEncoding() != null) {
+			return entity;
+		}
+		long length = entity.getContentLength();
+		// an unknown length is a stream, leave it alone
+		if (length < COMPRESS_THRESHOLD) {
+			return entity;
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.min(length / 4, Integer.MAX_VALUE));
+		try (OutputStream out = new GZIPOutputStream(buffer)) {
+			entity.writeTo(out);
+		}
+		ByteArrayEntity compressed = new ByteArrayEntity(buffer.toByteArray());
+		compressed.setContentType(entity.getContentType());
+		compressed.setContentEncoding(GZIP);
+
+		compressedRequests.incrementAndGet();
+		requestBytes.addAndGet(length);
+		requestBytesSent.addAndGet(compressed.getContentLength());
+		if (RestApiUtils.isIspwDebugMode())
+			logger.info("Request body compressed from " + length + " to " + compressed.getContentLength() + " bytes");
+		return compressed;
+	}
+
+	/**
+	 * Decompress the body of the given response as it is read, if it is gzip or deflate encoded. The response then
+	 * looks as if it was sent uncompressed.
+	 *
+	 * @param response
+	 *            the response
+	 */
+	public static void decode(HttpResponse response) {
+		HttpEntity entity = response.getEntity();
+		Header contentEncoding = entity != null ? entity.getContentEncoding() : null;
+		if (contentEncoding == null) {
+			return;
+		}
+
+		String codec = null;
+		for (HeaderElement element : contentEncoding.getElements()) {
+			String name = element.getName().toLowerCase(Locale.ROOT);
+			if (name.equals(GZIP) || name.equals("x-gzip")) {
+				name = GZIP;
+			} else if (!name.equals(DEFLATE)) {
+				if (name.equals("identity")) {
+					continue;
+				}
+				// an encoding we do not know, hand the body over as it is
+				return;
+			}
+			if (codec != null) {
+				// compressed twice, which CES never does
+				return;
+			}
+			codec = name;
+		}
+		if (codec == null) {
+			return;
+		}
+
+		response.setEntity(new DecodedEntity(entity, codec));
+		response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+		response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+		response.removeHeaders("Content-MD5");
+	}
+
+	/**
+	 * @return the number of compressed responses decoded
+	 */
+	public static long getDecodedResponses() {
+		return decodedResponses.get();
+	}
+
+	/**
+	 * @return the compression ratio of the decoded responses, their decoded size over their size on the wire, 0 if
+	 *         none was decoded yet
+	 */
+	public static double getResponseRatio() {
+		long received = responseBytesReceived.get();
+		return received > 0 ? (double) responseBytesDecoded.get() / received : 0.0;
+	}
+
+	/**
+	 * @return the number of request bodies sent compressed
+	 */
+	public static long getCompressedRequests() {
+		return compressedRequests.get();
+	}
+
+	/**
+	 * @return the compression ratio of the compressed request bodies, their size over their size on the wire, 0 if
+	 *         none was compressed yet
+	 */
+	public static double getRequestRatio() {
+		long sent = requestBytesSent.get();
+		return sent > 0 ? (double) requestBytes.get() / sent : 0.0;
+	}
+
+	/**
+	 * @return the compression statistics
+	 */
+	public static String getStatistics() {
+		return "decodedResponses=" + getDecodedResponses() + ", responseRatio="
+				+ String.format("%.2f", getResponseRatio()) + ", compressedRequests=" + getCompressedRequests()
+				+ ", requestRatio=" + String.format("%.2f", getRequestRatio());
+	}
+
+	private static void record(long received, long decoded) {
+		decodedResponses.incrementAndGet();
+		responseBytesReceived.addAndGet(received);
+		responseBytesDecoded.addAndGet(decoded);
+		if (RestApiUtils.isIspwDebugMode())
+			logger.info("Response body decompressed from " + received + " to " + decoded + " bytes, " + getStatistics());
+	}
+
+	/**
+	 * A compressed body, decompressed as it is read
+	 */
+	private static class DecodedEntity extends HttpEntityWrapper {
+		private final String codec;
+		private InputStream content;
+
+		private DecodedEntity(HttpEntity entity, String codec) {
+			super(entity);
+			this.codec = codec;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			// like the wrapped entity, a streamed body can be read once only
+			if (content == null || wrappedEntity.isRepeatable()) {
+				content = new DecodingInputStream(wrappedEntity.getContent(), codec);
+			}
+			return content;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public Header getContentEncoding() {
+			return null;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (InputStream in = getContent()) {
+				ByteStreams.copy(in, out);
+			}
+		}
+	}
+
+	/**
+	 * Decompresses the body, opening the decompressor on the first read so that an empty body is no error, and counts
+	 * the bytes on both sides
+	 */
+	private static class DecodingInputStream extends InputStream {
+		private final CountingInputStream received;
+		private final String codec;
+		private InputStream decoded;
+		private long decodedBytes;
+		private boolean closed;
+
+		private DecodingInputStream(InputStream received, String codec) {
+			this.received = new CountingInputStream(received);
+			this.codec = codec;
+		}
+
+		private InputStream decoded() throws IOException {
+			if (decoded == null) {
+				decoded = GZIP.equals(codec) ? new GZIPInputStream(received) : new DeflateInputStream(received);
+			}
+			return decoded;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = decoded().read();
+			if (b >= 0) {
+				decodedBytes++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = decoded().read(b, off, len);
+			if (n > 0) {
+				decodedBytes += n;
+			}
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return decoded != null ? decoded.available() : 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				(decoded != null ? decoded : received).close();
+			} finally {
+				record(received.getCount(), decodedBytes);
+			}
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Finds expected and forbidden substrings in a response body in a single pass over its characters, with an
+ * Aho-Corasick automaton over all substrings at once. The body is scanned as it flows, e.g. to the output file, so it
+ * is validated with constant memory however large it is.
+ * <p>
+ * A matcher is immutable, each body is scanned by a new {@link Scan}.
+ */
+public class ContentMatcher {
+
+	private final List<String> expected;
+	private final List<String> forbidden;
+
+	// the trie: the labels of the edges leaving each state in ascending order, and the states they lead to
+	private final char[][] labels;
+	private final int[][] targets;
+	private final int[] failure;
+	// the substrings, by index in expected followed by forbidden, ending in each state
+	private final int[][] outputs;
+
+	private ContentMatcher(List<String> expected, List<String> forbidden) {
+		this.expected = expected;
+		this.forbidden = forbidden;
+
+		List<String> patterns = new ArrayList<>(expected);
+		patterns.addAll(forbidden);
+
+		List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+		List<List<Integer>> ends = new ArrayList<>();
+		edges.add(new TreeMap<>());
+		ends.add(new ArrayList<>());
+		for (int p = 0; p < patterns.size(); p++) {
+			int state = 0;
+			for (char c : patterns.get(p).toCharArray()) {
+				Integer next = edges.get(state).get(c);
+				if (next == null) {
+					next = edges.size();
+					edges.get(state).put(c, next);
+					edges.add(new TreeMap<>());
+					ends.add(new ArrayList<>());
+				}
+				state = next;
+			}
+			ends.get(state).add(p);
+		}
+
+		int states = edges.size();
+		labels = new char[states][];
+		targets = new int[states][];
+		for (int s = 0; s < states; s++) {
+			TreeMap<Character, Integer> edge = edges.get(s);
+			labels[s] = new char[edge.size()];
+			targets[s] = new int[edge.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> e : edge.entrySet()) {
+				labels[s][i] = e.getKey();
+				targets[s][i++] = e.getValue();
+			}
+		}
+
+		// breadth first, so the failure state of a state's parent is known before the state itself
+		failure = new int[states];
+		outputs = new int[states][];
+		outputs[0] = toArray(ends.get(0));
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int target : targets[0]) {
+			queue.add(target);
+			outputs[target] = toArray(ends.get(target));
+		}
+		while (!queue.isEmpty()) {
+			int s = queue.remove();
+			for (int i = 0; i < labels[s].length; i++) {
+				char c = labels[s][i];
+				int t = targets[s][i];
+				int f = failure[s];
+				while (f != 0 && next(f, c) < 0) {
+					f = failure[f];
+				}
+				int n = next(f, c);
+				failure[t] = n >= 0 && n != t ? n : 0;
+
+				List<Integer> out = ends.get(t);
+				for (int o : outputs[failure[t]]) {
+					out.add(o);
+				}
+				outputs[t] = toArray(out);
+				queue.add(t);
+			}
+		}
+	}
+
+	/**
+	 * @param expected
+	 *            substrings the body must contain, blank ones are ignored
+	 * @param forbidden
+	 *            substrings the body must not contain, blank ones are ignored
+	 * @return the matcher, null if there is nothing to match
+	 */
+	public static ContentMatcher of(List<String> expected, List<String> forbidden) {
+		List<String> e = nonBlank(expected);
+		List<String> f = nonBlank(forbidden);
+		if (e.isEmpty() && f.isEmpty()) {
+			return null;
+		}
+		return new ContentMatcher(e, f);
+	}
+
+	/**
+	 * @param lines
+	 *            substrings, one per line, may be null
+	 * @return the non blank lines
+	 */
+	public static List<String> lines(String lines) {
+		if (StringUtils.isBlank(lines)) {
+			return Collections.emptyList();
+		}
+		return nonBlank(Arrays.asList(lines.split("\\r?\\n")));
+	}
+
+	/**
+	 * @return a new scan of one body
+	 */
+	public Scan newScan() {
+		return new Scan();
+	}
+
+	// the state reached from the given state on the given char, -1 if there is no edge
+	private int next(int state, char c) {
+		int i = Arrays.binarySearch(labels[state], c);
+		return i >= 0 ? targets[state][i] : -1;
+	}
+
+	private static List<String> nonBlank(List<String> substrings) {
+		List<String> result = new ArrayList<>();
+		if (substrings != null) {
+			for (String s : substrings) {
+				if (StringUtils.isNotBlank(s)) {
+					result.add(s);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * The scan of one body, fed its characters in order
+	 */
+	public class Scan {
+		private final boolean[] found = new boolean[expected.size() + forbidden.size()];
+		private int state;
+
+		private Scan() {
+		}
+
+		/**
+		 * @param chars
+		 *            the next characters of the body
+		 * @param off
+		 *            the first character
+		 * @param len
+		 *            the number of characters
+		 */
+		public void feed(char[] chars, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				char c = chars[i];
+				int n;
+				while ((n = next(state, c)) < 0 && state != 0) {
+					state = failure[state];
+				}
+				state = Math.max(n, 0);
+				for (int o : outputs[state]) {
+					found[o] = true;
+				}
+			}
+		}
+
+		/**
+		 * Feed the rest of the given reader, without closing it
+		 *
+		 * @param reader
+		 *            the body
+		 * @throws IOException
+		 *             if the body cannot be read
+		 */
+		public void feed(Reader reader) throws IOException {
+			char[] buffer = new char[8192];
+			for (int n; (n = reader.read(buffer)) >= 0;) {
+				feed(buffer, 0, n);
+			}
+		}
+
+		/**
+		 * @param in
+		 *            the encoded body
+		 * @param charset
+		 *            the charset of the body
+		 * @return a stream passing the body through unchanged, scanning it as it is read
+		 */
+		public InputStream watch(InputStream in, Charset charset) {
+			return new ScanningInputStream(in, charset.newDecoder(), this);
+		}
+
+		/**
+		 * @return the expected substrings which were not found
+		 */
+		public List<String> getMissing() {
+			List<String> missing = new ArrayList<>();
+			for (int i = 0; i < expected.size(); i++) {
+				if (!found[i]) {
+					missing.add(expected.get(i));
+				}
+			}
+			return missing;
+		}
+
+		/**
+		 * @return the forbidden substrings which were found
+		 */
+		public List<String> getForbiddenFound() {
+			List<String> present = new ArrayList<>();
+			for (int i = 0; i < forbidden.size(); i++) {
+				if (found[expected.size() + i]) {
+					present.add(forbidden.get(i));
+				}
+			}
+			return present;
+		}
+	}
+
+	/**
+	 * Decodes the bytes passing through and feeds the characters to a scan
+	 */
+	private static class ScanningInputStream extends FilterInputStream {
+		private final CharsetDecoder decoder;
+		private final Scan scan;
+		// keeps the bytes of a character split across reads until the rest arrives
+		private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+		private final CharBuffer chars = CharBuffer.allocate(8192);
+		private boolean ended;
+
+		private ScanningInputStream(InputStream in, CharsetDecoder decoder, Scan scan) {
+			super(in);
+			this.decoder = decoder.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.scan = scan;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				decode(new byte[] { (byte) b }, 0, 1);
+			} else {
+				end();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				decode(b, off, n);
+			} else if (n < 0) {
+				end();
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			end();
+			super.close();
+		}
+
+		private void decode(byte[] b, int off, int len) {
+			while (len > 0) {
+				int n = Math.min(len, bytes.remaining());
+				bytes.put(b, off, n);
+				off += n;
+				len -= n;
+				// flipped and cleared as a Buffer, to link on Java 8 when built on a later JDK
+				((Buffer) bytes).flip();
+				decode(false);
+				bytes.compact();
+			}
+		}
+
+		private void decode(boolean endOfInput) {
+			CoderResult result;
+			do {
+				result = decoder.decode(bytes, chars, endOfInput);
+				drain();
+			} while (result.isOverflow());
+		}
+
+		private void end() {
+			if (ended) {
+				return;
+			}
+			ended = true;
+			((Buffer) bytes).flip();
+			decode(true);
+			while (decoder.flush(chars).isOverflow()) {
+				drain();
+			}
+			drain();
+		}
+
+		private void drain() {
+			((Buffer) chars).flip();
+			scan.feed(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+			((Buffer) chars).clear();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.compuware.ispw.restapi.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A compiled action context path such as <code>/ispw/{srid}/releases/{releaseId}/tasks?level={level}</code>.
+ * <p>
+ * The template is parsed once into path and query segments and expanded in a single pass:
+ * <ul>
+ * <li>bound variables are percent-encoded</li>
+ * <li>a query parameter whose value uses an unbound variable is optional and left out, unless the caller asks for
+ * required query parameters</li>
+ * <li>an unbound path variable stays as <code>{name}</code>, so the request can report it as missing</li>
+ * <li>a query variable written as <code>{name*}</code> takes a comma separated list and repeats the parameter for each
+ * item, for example <code>taskId=A&amp;taskId=B</code></li>
+ * </ul>
+ */
+public final class ContextPathTemplate {
+
+	private static final ConcurrentMap<String, ContextPathTemplate> templates = new ConcurrentHashMap<>();
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String template;
+	private final List<Segment> pathSegments;
+	private final List<QueryParam> queryParams;
+	private final List<String> variables;
+
+	/**
+	 * @param template
+	 *            the context path template
+	 * @return the compiled template, parsed on first use and shared afterwards
+	 */
+	public static ContextPathTemplate compile(String template) {
+		ContextPathTemplate compiled = templates.get(template);
+		if (compiled == null) {
+			compiled = templates.computeIfAbsent(template, ContextPathTemplate::new);
+		}
+		return compiled;
+	}
+
+	private ContextPathTemplate(String template) {
+		this.template = template;
+
+		List<String> variables = new ArrayList<>();
+
+		int index = template.indexOf('?');
+		String path = index != -1 ? template.substring(0, index) : template;
+		this.pathSegments = Collections.unmodifiableList(parse(path, variables));
+
+		List<QueryParam> queryParams = new ArrayList<>();
+		if (index != -1) {
+			for (String param : StringUtils.split(template.substring(index + 1), '&')) {
+				int equalSign = param.indexOf('=');
+				String name = equalSign != -1 ? param.substring(0, equalSign) : param;
+				List<Segment> value = equalSign != -1 ? parse(param.substring(equalSign + 1), variables)
+						: Collections.<Segment> emptyList();
+				queryParams.add(new QueryParam(name, value));
+			}
+		}
+		this.queryParams = Collections.unmodifiableList(queryParams);
+		this.variables = Collections.unmodifiableList(variables);
+	}
+
+	private static List<Segment> parse(String text, List<String> variables) {
+		List<Segment> segments = new ArrayList<>();
+
+		int start = 0;
+		while (start < text.length()) {
+			int open = text.indexOf('{', start);
+			int close = open != -1 ? text.indexOf('}', open) : -1;
+			if (close == -1) {
+				segments.add(Segment.literal(text.substring(start)));
+				break;
+			}
+
+			if (open > start) {
+				segments.add(Segment.literal(text.substring(start, open)));
+			}
+
+			String name = text.substring(open + 1, close);
+			boolean explode = name.endsWith("*"); //$NON-NLS-1$
+			if (explode) {
+				name = name.substring(0, name.length() - 1);
+			}
+			segments.add(Segment.variable(name, explode));
+			if (!variables.contains(name)) {
+				variables.add(name);
+			}
+
+			start = close + 1;
+		}
+
+		return segments;
+	}
+
+	/**
+	 * @return all variable names in order of appearance
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @param name
+	 *            the variable name
+	 * @return true if the template uses the variable
+	 */
+	public boolean hasVariable(String name) {
+		return variables.contains(name);
+	}
+
+	/**
+	 * Expand the template, leaving out query parameters using an unbound variable
+	 *
+	 * @param values
+	 *            the variable values, blank values count as unbound
+	 * @return the context path
+	 */
+	public String expand(Map<String, String> values) {
+		return expand(values, true);
+	}
+
+	/**
+	 * Expand the template
+	 *
+	 * @param values
+	 *            the variable values, blank values count as unbound
+	 * @param optionalQuery
+	 *            true to leave out query parameters using an unbound variable, false to keep them as written so they
+	 *            show up as undefined like path variables
+	 * @return the context path
+	 */
+	public String expand(Map<String, String> values, boolean optionalQuery) {
+		StringBuilder sb = new StringBuilder(template.length() + 32);
+
+		for (Segment segment : pathSegments) {
+			if (segment.name == null) {
+				sb.append(segment.text);
+			} else {
+				String value = values.get(segment.name);
+				if (StringUtils.isBlank(value)) {
+					sb.append(segment.text); // keep {name} so it shows up as undefined
+				} else {
+					encode(value, sb);
+				}
+			}
+		}
+
+		char separator = '?';
+		for (QueryParam param : queryParams) {
+			boolean bound = param.isBound(values);
+			if (!bound && optionalQuery) {
+				continue;
+			}
+
+			Segment exploded = bound ? param.getExploded() : null;
+			if (exploded != null) {
+				for (String item : StringUtils.split(values.get(exploded.name), ',')) {
+					item = item.trim();
+					if (!item.isEmpty()) {
+						sb.append(separator);
+						encode(param.name, sb);
+						sb.append('=');
+						encode(item, sb);
+						separator = '&';
+					}
+				}
+			} else {
+				sb.append(separator);
+				encode(param.name, sb);
+				if (!param.value.isEmpty()) {
+					sb.append('=');
+					for (Segment segment : param.value) {
+						if (segment.name == null || StringUtils.isBlank(values.get(segment.name))) {
+							sb.append(segment.text);
+						} else {
+							encode(values.get(segment.name), sb);
+						}
+					}
+				}
+				separator = '&';
+			}
+		}
+
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+
+	/**
+	 * Percent-encode everything except the unreserved characters of RFC 3986
+	 */
+	static void encode(String value, StringBuilder sb) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (!isUnreserved(c)) {
+				for (byte b : value.substring(i).getBytes(StandardCharsets.UTF_8)) {
+					if (isUnreserved((char) b)) {
+						sb.append((char) b);
+					} else {
+						sb.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+					}
+				}
+				return;
+			}
+			sb.append(c);
+		}
+	}
+
+	private static boolean isUnreserved(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+				|| c == '_' || c == '~';
+	}
+
+	private static class Segment {
+		private final String text;
+		private final String name;
+		private final boolean explode;
+
+		private Segment(String text, String name, boolean explode) {
+			this.text = text;
+			this.name = name;
+			this.explode = explode;
+		}
+
+		static Segment literal(String text) {
+			return new Segment(text, null, false);
+		}
+
+		static Segment variable(String name, boolean explode) {
+			return new Segment("{" + name + "}", name, explode); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private static class QueryParam {
+		private final String name;
+		private final List<Segment> value;
+
+		private QueryParam(String name, List<Segment> value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		private boolean isBound(Map<String, String> values) {
+			for (Segment segment : value) {
+				if (segment.name != null && StringUtils.isBlank(values.get(segment.name))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Segment getExploded() {
+			return value.size() == 1 && value.get(0).explode ? value.get(0) : null;
+		}
+	}
+}
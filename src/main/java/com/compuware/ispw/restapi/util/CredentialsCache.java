@@ -0,0 +1,191 @@
+package com.compuware.ispw.restapi.util;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import com.cloudbees.plugins.credentials.Credentials;
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+
+/**
+ * Short lived cache of credentials looked up for ISPW requests. Looking up credentials walks the credential stores of
+ * all folders above an item, which is costly with many folder scoped credentials, and the same credentials are looked
+ * up for every step of a build.
+ * <p>
+ * Credentials are cached per item and credentials id for a few seconds, and dropped as soon as the system credentials
+ * or the configuration of any folder is saved. Credentials which are not found are not cached.
+ */
+public final class CredentialsCache {
+
+	private static Logger logger = Logger.getLogger(CredentialsCache.class);
+
+	private static final String PROPERTY_PREFIX = CredentialsCache.class.getName();
+
+	static final long TTL_MILLIS = Long.getLong(PROPERTY_PREFIX + ".ttlMillis", TimeUnit.SECONDS.toMillis(60));
+	static final int MAX_ENTRIES = Integer.getInteger(PROPERTY_PREFIX + ".maxEntries", 1000);
+
+	private static final ConcurrentMap<Key, Entry> cache = new ConcurrentHashMap<>();
+
+	private CredentialsCache() {
+	}
+
+	/**
+	 * @param credentialsId
+	 *            the id of a secret text credentials
+	 * @param item
+	 *            the item the credentials are used by, null for global credentials
+	 * @return the secret text credentials, null if not found
+	 */
+	public static StringCredentials getSecretText(String credentialsId, Item item) {
+		String id = StringUtils.trimToEmpty(credentialsId);
+		Key key = new Key(StringCredentials.class, item, id, null);
+		StringCredentials credentials = get(key, StringCredentials.class);
+		if (credentials == null) {
+			credentials = CredentialsMatchers.firstOrNull(
+					CredentialsProvider.lookupCredentials(StringCredentials.class, item, ACL.SYSTEM,
+							Collections.<DomainRequirement> emptyList()),
+					CredentialsMatchers.withId(id));
+			put(key, credentials);
+		}
+		return credentials;
+	}
+
+	/**
+	 * @param credentialsId
+	 *            the id of a username and password credentials
+	 * @param item
+	 *            the item the credentials are used by, null for global credentials
+	 * @param url
+	 *            the URL the credentials are used for, decides the credentials domains which apply
+	 * @return the username and password credentials, null if not found
+	 */
+	public static StandardUsernamePasswordCredentials getUsernamePassword(String credentialsId, Item item,
+			String url) {
+		Key key = new Key(StandardUsernamePasswordCredentials.class, item, credentialsId, url);
+		StandardUsernamePasswordCredentials credentials = get(key, StandardUsernamePasswordCredentials.class);
+		if (credentials == null) {
+			credentials = CredentialsMatchers.firstOrNull(
+					CredentialsProvider.lookupCredentials(StandardUsernamePasswordCredentials.class, item, ACL.SYSTEM,
+							URIRequirementBuilder.fromUri(url).build()),
+					CredentialsMatchers.withId(credentialsId));
+			put(key, credentials);
+		}
+		return credentials;
+	}
+
+	/**
+	 * Drop all cached credentials
+	 */
+	public static void invalidateAll() {
+		if (!cache.isEmpty()) {
+			cache.clear();
+			if (RestApiUtils.isIspwDebugMode()) {
+				logger.info("...credentials cache cleared");
+			}
+		}
+	}
+
+	private static <T extends Credentials> T get(Key key, Class<T> type) {
+		Entry entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis())) {
+			cache.remove(key, entry);
+			return null;
+		}
+		return type.cast(entry.credentials);
+	}
+
+	private static void put(Key key, Credentials credentials) {
+		if (credentials == null) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		cache.put(key, new Entry(credentials, now + TTL_MILLIS));
+		if (cache.size() > MAX_ENTRIES) {
+			cache.values().removeIf(entry -> entry.isExpired(now));
+			if (cache.size() > MAX_ENTRIES) {
+				// nothing expired yet, start over rather than track the age of every entry
+				cache.clear();
+			}
+		}
+	}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final String itemName;
+		private final String credentialsId;
+		private final String url;
+
+		private Key(Class<?> type, Item item, String credentialsId, String url) {
+			this.type = type;
+			this.itemName = item != null ? item.getFullName() : StringUtils.EMPTY;
+			this.credentialsId = credentialsId;
+			this.url = url;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return type == other.type && itemName.equals(other.itemName)
+					&& Objects.equals(credentialsId, other.credentialsId) && Objects.equals(url, other.url);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, itemName, credentialsId, url);
+		}
+	}
+
+	private static final class Entry {
+		private final Credentials credentials;
+		private final long expiresAt;
+
+		private Entry(Credentials credentials, long expiresAt) {
+			this.credentials = credentials;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+	/**
+	 * Drops the cached credentials when the system credentials or a folder, which may hold credentials, is saved
+	 */
+	@Extension
+	public static class CredentialsStoreListener extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup) {
+				invalidateAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.compuware.ispw.restapi.util;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
+import hudson.init.Terminator;
+
+/**
+ * Registry of pooled HTTP clients shared by all ISPW requests running in this JVM. A client is created once per CES
+ * host, proxy, SSL mode and timeout, so consecutive operations and set status polls reuse kept-alive connections
+ * instead of paying a new TCP and TLS handshake each time.
+ * <p>
+ * Clients handed out by this registry are shared and must never be closed by the caller; closing the response entity
+ * stream is enough to return the connection to the pool.
+ */
+public class HttpClientRegistry {
+
+	private static Logger logger = Logger.getLogger(HttpClientRegistry.class);
+
+	private static final String PROPERTY_PREFIX = HttpClientRegistry.class.getName();
+
+	static final int MAX_TOTAL = Integer.getInteger(PROPERTY_PREFIX + ".maxTotal", 200);
+	static final int MAX_PER_ROUTE = Integer.getInteger(PROPERTY_PREFIX + ".maxPerRoute", 50);
+	static final long KEEP_ALIVE_MILLIS = Long.getLong(PROPERTY_PREFIX + ".keepAliveMillis", 60000L);
+	static final long IDLE_EVICTION_MILLIS = Long.getLong(PROPERTY_PREFIX + ".idleEvictionMillis", 30000L);
+	static final int VALIDATE_AFTER_INACTIVITY_MILLIS =
+			Integer.getInteger(PROPERTY_PREFIX + ".validateAfterInactivityMillis", 2000);
+
+	private static final ConcurrentMap<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+	private HttpClientRegistry() {
+	}
+
+	/**
+	 * Get the shared client for the given request target, creating it on first use.
+	 *
+	 * @param url
+	 *            the request URL, only its scheme, host and port are part of the key
+	 * @param httpProxy
+	 *            the proxy, may be null
+	 * @param ignoreSslErrors
+	 *            true to trust any certificate and host name
+	 * @param timeout
+	 *            timeout in seconds, 0 or less for the client defaults
+	 * @return a shared client, never close it
+	 */
+	public static CloseableHttpClient getClient(URL url, HttpHost httpProxy, boolean ignoreSslErrors, int timeout) {
+		String trustMode = SslSocketFactoryRegistry.getTrustMode(url.getHost(), ignoreSslErrors);
+		String key = toKey(url, httpProxy, trustMode, timeout);
+
+		CloseableHttpClient client = clients.get(key);
+		if (client == null) {
+			client = clients.computeIfAbsent(key, k -> createClient(httpProxy, trustMode, timeout));
+			if (RestApiUtils.isIspwDebugMode())
+				logger.info("Created pooled HTTP client for " + key);
+		}
+
+		return client;
+	}
+
+	/**
+	 * Close all pooled clients and their idle connections. Any client obtained before is no longer usable afterwards.
+	 */
+	public static void closeAll() {
+		for (String key : clients.keySet()) {
+			CloseableHttpClient client = clients.remove(key);
+			if (client != null) {
+				try {
+					client.close();
+				} catch (Exception x) {
+					logger.warn("Failed to close pooled HTTP client for " + key, x);
+				}
+			}
+		}
+	}
+
+	@Terminator
+	public static void shutdown() {
+		closeAll();
+	}
+
+	static String toKey(URL url, HttpHost httpProxy, String trustMode, int timeout) {
+		int port = url.getPort() > 0 ? url.getPort() : url.getDefaultPort();
+
+		StringBuilder key = new StringBuilder();
+		key.append(url.getProtocol().toLowerCase()).append("://").append(url.getHost().toLowerCase()).append(':')
+				.append(port);
+		key.append("|proxy=").append(httpProxy != null ? httpProxy.toURI() : "");
+		key.append("|ssl=").append(trustMode);
+		key.append("|timeout=").append(timeout > 0 ? timeout : 0);
+		return key.toString();
+	}
+
+	private static CloseableHttpClient createClient(HttpHost httpProxy, String trustMode, int timeout) {
+		PoolingHttpClientConnectionManager connectionManager =
+				new PoolingHttpClientConnectionManager(createSocketFactoryRegistry(trustMode));
+		connectionManager.setMaxTotal(MAX_TOTAL);
+		connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+		connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+		HttpClientBuilder clientBuilder = HttpClientBuilder.create().useSystemProperties()
+				// responses are decompressed by ContentEncoding, the same way on both transports
+				.disableContentCompression()
+				.setConnectionManager(connectionManager).setKeepAliveStrategy(new CappedKeepAliveStrategy())
+				.evictExpiredConnections().evictIdleConnections(IDLE_EVICTION_MILLIS, TimeUnit.MILLISECONDS);
+
+		if (timeout > 0) {
+			int t = timeout * 1000;
+			RequestConfig config = RequestConfig.custom()
+					.setSocketTimeout(t)
+					.setConnectTimeout(t)
+					.setConnectionRequestTimeout(t)
+					.build();
+			clientBuilder.setDefaultRequestConfig(config);
+		}
+
+		if (httpProxy != null) {
+			clientBuilder.setProxy(httpProxy);
+		}
+
+		return clientBuilder.build();
+	}
+
+	private static Registry<ConnectionSocketFactory> createSocketFactoryRegistry(String trustMode) {
+		return RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", SslSocketFactoryRegistry.getSocketFactory(trustMode)).build();
+	}
+
+	/**
+	 * Honors the Keep-Alive header of CES, but never keeps a connection longer than the configured maximum
+	 */
+	private static class CappedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			if (duration <= 0 || duration > KEEP_ALIVE_MILLIS) {
+				return KEEP_ALIVE_MILLIS;
+			}
+			return duration;
+		}
+	}
+}
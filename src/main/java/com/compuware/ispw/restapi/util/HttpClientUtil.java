@@ -37,6 +37,7 @@ public class HttpClientUtil {
         for (HttpRequestNameValuePair header : requestAction.getHeaders()) {
             httpRequestBase.addHeader(header.getName(), header.getValue());
         }
+        ContentEncoding.acceptCompressed(httpRequestBase);
 
         return httpRequestBase;
     }
@@ -65,7 +66,7 @@ public class HttpClientUtil {
 			http = new HttpPost(uri);
 		}
 
-		http.setEntity(makeEntity(requestAction));
+		http.setEntity(ContentEncoding.compress(makeEntity(requestAction)));
         return http;
     }
 
@@ -131,6 +132,7 @@ public class HttpClientUtil {
     		logger.println("Sending request to url: " + method.getURI());
         
         final HttpResponse httpResponse = client.execute(method, context);
+        ContentEncoding.decode(httpResponse);
         
         if(RestApiUtils.isIspwDebugMode())
         	logger.println("HTTP Response Code: " + httpResponse.getStatusLine());
@@ -0,0 +1,231 @@
+package com.compuware.ispw.restapi.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.bind.annotation.XmlElement;
+import org.apache.commons.beanutils.ConversionException;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Binds request body properties to a bean by their JSON name. The JSON name of a property is the name of its
+ * {@link XmlElement} annotation, or the field name if the field is not annotated.
+ * <p>
+ * The accessor table of a class is built on first use: fields, bean properties and value converters are resolved once,
+ * and setters and getters are called through method handles. Binding a value is then a single map lookup.
+ * <p>
+ * A value which cannot be converted to the property type is logged and not set, rather than replaced by the default
+ * value of the type.
+ */
+public class PropertyBinder {
+
+	private static Logger logger = Logger.getLogger(PropertyBinder.class);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	// the same converters as ConvertUtils, but failing on a value they cannot convert
+	private static final ConvertUtilsBean strictConverters = new ConvertUtilsBean();
+	static {
+		strictConverters.register(true, false, 0);
+	}
+
+	private static final ClassValue<PropertyBinder> binders = new ClassValue<PropertyBinder>() {
+		@Override
+		protected PropertyBinder computeValue(Class<?> type) {
+			return new PropertyBinder(type);
+		}
+	};
+
+	private final Class<?> beanClass;
+	private final Map<String, Property> properties;
+
+	/**
+	 * @param beanClass
+	 *            the bean class
+	 * @return the binder of the class, built on first use and shared afterwards
+	 */
+	public static PropertyBinder forClass(Class<?> beanClass) {
+		return binders.get(beanClass);
+	}
+
+	private PropertyBinder(Class<?> beanClass) {
+		this.beanClass = beanClass;
+
+		Map<String, PropertyDescriptor> descriptors = new HashMap<>();
+		try {
+			BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+			for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+				descriptors.put(descriptor.getName(), descriptor);
+			}
+		} catch (IntrospectionException e) {
+			logger.error("Failed to introspect class " + beanClass.getName(), e);
+		}
+
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		Map<String, Property> properties = new HashMap<>();
+		for (Field field : FieldUtils.getAllFieldsList(beanClass)) {
+			PropertyDescriptor descriptor = descriptors.get(field.getName());
+			if (descriptor == null) {
+				continue;
+			}
+
+			String jsonName = field.getName(); // default to field name
+			XmlElement xmlElement = field.getAnnotation(XmlElement.class);
+			if (xmlElement != null) {
+				jsonName = xmlElement.name(); // use annotation name if presented
+			}
+
+			if (!properties.containsKey(jsonName)) {
+				properties.put(jsonName, createProperty(lookup, descriptor));
+			}
+		}
+
+		this.properties = Collections.unmodifiableMap(properties);
+	}
+
+	private Property createProperty(MethodHandles.Lookup lookup, PropertyDescriptor descriptor) {
+		Method writeMethod = descriptor.getWriteMethod();
+		Method readMethod = descriptor.getReadMethod();
+
+		MethodHandle setter = null;
+		MethodHandle getter = null;
+		try {
+			if (writeMethod != null) {
+				setter = lookup.unreflect(writeMethod).asType(SETTER_TYPE);
+			}
+			if (readMethod != null) {
+				getter = lookup.unreflect(readMethod).asType(GETTER_TYPE);
+			}
+		} catch (IllegalAccessException e) {
+			logger.warn("Property " + descriptor.getName() + " of class " + beanClass.getName()
+					+ " is not accessible", e);
+		}
+
+		Class<?> type = descriptor.getPropertyType();
+		return new Property(descriptor.getName(), type, setter, getter, strictConverters.lookup(type),
+				ConvertUtils.lookup(type));
+	}
+
+	/**
+	 * @param jsonName
+	 *            the JSON name of the property
+	 * @return true if the class has a property with this JSON name
+	 */
+	public boolean hasProperty(String jsonName) {
+		return properties.containsKey(jsonName);
+	}
+
+	/**
+	 * Set a property, converting the value to the property type if needed. Unknown properties are ignored.
+	 *
+	 * @param object
+	 *            the bean
+	 * @param jsonName
+	 *            the JSON name of the property
+	 * @param value
+	 *            the value
+	 * @return true if the property was set
+	 */
+	public boolean set(Object object, String jsonName, Object value) {
+		Property property = properties.get(jsonName);
+		if (property == null || property.setter == null) {
+			return false;
+		}
+
+		try {
+			property.setter.invokeExact(object, property.convert(value));
+			return true;
+		} catch (ConversionException e) {
+			String message = "Property key " + jsonName + "(" + property.name + ") is not set, value [" + value
+					+ "] cannot be converted to " + property.type.getName();
+			if (RestApiUtils.isIspwDebugMode()) {
+				logger.warn(message, e);
+			} else {
+				logger.warn(message);
+			}
+			return false;
+		} catch (Throwable e) {
+			logger.warn("Property key " + jsonName + "(" + property.name + ") is invalid, cannot be set to class "
+					+ beanClass.getName() + " as value [" + value + "]", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Get a property as string
+	 *
+	 * @param object
+	 *            the bean
+	 * @param jsonName
+	 *            the JSON name of the property
+	 * @return the value converted to string, null if the value is null, empty if the property is unknown
+	 */
+	public String get(Object object, String jsonName) {
+		Property property = properties.get(jsonName);
+		if (property == null || property.getter == null) {
+			return StringUtils.EMPTY;
+		}
+
+		try {
+			Object value = (Object) property.getter.invokeExact(object);
+			if (value == null || value instanceof String) {
+				return (String) value;
+			}
+			return ConvertUtils.convert(value);
+		} catch (Throwable e) {
+			logger.warn("Property key " + jsonName + "(" + property.name + ") is invalid, cannot get value for class "
+					+ beanClass.getName(), e);
+			return StringUtils.EMPTY;
+		}
+	}
+
+	private static class Property {
+		private final String name;
+		private final Class<?> type;
+		private final MethodHandle setter;
+		private final MethodHandle getter;
+		private final Converter converter;
+		private final Converter lenientConverter;
+
+		private Property(String name, Class<?> type, MethodHandle setter, MethodHandle getter, Converter converter,
+				Converter lenientConverter) {
+			this.name = name;
+			this.type = type;
+			this.setter = setter;
+			this.getter = getter;
+			this.converter = converter;
+			this.lenientConverter = lenientConverter;
+		}
+
+		private Object convert(Object value) {
+			if (value == null || ClassUtils.isAssignable(value.getClass(), type, true)) {
+				return value;
+			}
+			if (converter == null) {
+				throw new IllegalArgumentException("No converter from " + value.getClass().getName() + " to "
+						+ type.getName());
+			}
+			if (value instanceof String && StringUtils.isBlank((String) value) && lenientConverter != null) {
+				// an empty value is no mistake, it stands for the default value of the type
+				return lenientConverter.convert(type, value);
+			}
+			return converter.convert(type, value);
+		}
+	}
+}
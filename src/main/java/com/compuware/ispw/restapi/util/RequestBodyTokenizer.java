@@ -0,0 +1,232 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.PrintStream;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Single pass tokenizer of the ISPW request body, a list of <code>name = value</code> lines. The body is scanned in
+ * place, line by line, without splitting it into an array first.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(ispwRequestBody);
+ * while (tokenizer.nextEntry(logger)) {
+ * 	String name = tokenizer.getKey();
+ * 	String value = tokenizer.getValue();
+ * 	...
+ * }
+ * </pre>
+ */
+public final class RequestBodyTokenizer {
+
+	public static final String BUILD_AUTOMATICALLY = "buildautomatically"; //$NON-NLS-1$
+	public static final String EVENTS_PREFIX = "events."; //$NON-NLS-1$
+
+	/**
+	 * The kind of a request body line
+	 */
+	public enum Kind {
+		/** <code>name = value</code> */
+		PROPERTY,
+		/** <code>events.name = value</code>, webhook event callback settings */
+		EVENT,
+		/** a line containing <code>buildautomatically</code>, build parameters are read from a file */
+		BUILD_AUTOMATICALLY,
+		/** a line starting with <code>#</code> */
+		COMMENT,
+		/** an empty line */
+		BLANK,
+		/** a line that is neither of the above */
+		INVALID
+	}
+
+	private final CharSequence body;
+	private final int length;
+
+	private int position;
+	private int lineNo;
+
+	private Kind kind;
+	private String line;
+	private String key;
+	private String value;
+
+	/**
+	 * @param body
+	 *            the request body, may be null
+	 */
+	public RequestBodyTokenizer(CharSequence body) {
+		this.body = body != null ? body : ""; //$NON-NLS-1$
+		this.length = this.body.length();
+	}
+
+	/**
+	 * Move to the next line of any kind
+	 *
+	 * @return false if there are no more lines
+	 */
+	public boolean next() {
+		if (position >= length) {
+			return false;
+		}
+
+		int start = position;
+		int end = start;
+		while (end < length && body.charAt(end) != '\n') {
+			end++;
+		}
+		position = end + 1;
+		lineNo++;
+
+		// trim like String.trim, also takes care of \r
+		while (start < end && body.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && body.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		line = body.subSequence(start, end).toString();
+		key = null;
+		value = null;
+
+		if (line.isEmpty()) {
+			kind = Kind.BLANK;
+		} else if (line.charAt(0) == '#') {
+			kind = Kind.COMMENT;
+		} else {
+			int equalSign = line.indexOf('=');
+			int keyword = StringUtils.indexOfIgnoreCase(line, BUILD_AUTOMATICALLY);
+			if (equalSign != -1) {
+				key = line.substring(0, equalSign).trim();
+				value = line.substring(equalSign + 1).trim();
+			}
+
+			if (keyword != -1 && (equalSign == -1 || keyword < equalSign)) {
+				kind = Kind.BUILD_AUTOMATICALLY;
+				key = BUILD_AUTOMATICALLY;
+				// anything containing "true" after the keyword, like "buildautomatically = true"
+				int afterKeyword = keyword + BUILD_AUTOMATICALLY.length();
+				value = StringUtils.indexOfIgnoreCase(line, "true", afterKeyword) > afterKeyword ? "true" : "false"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			} else if (equalSign == -1) {
+				kind = Kind.INVALID;
+			} else if (key.startsWith(EVENTS_PREFIX)) {
+				kind = Kind.EVENT;
+			} else {
+				kind = Kind.PROPERTY;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Move to the next property or event line with a value. Comments, blank lines, lines without a value and the
+	 * <code>buildautomatically</code> line are skipped.
+	 *
+	 * @param logger
+	 *            where to report lines that are not <code>name = value</code>, may be null
+	 * @return false if there are no more entries
+	 */
+	public boolean nextEntry(PrintStream logger) {
+		while (next()) {
+			switch (kind) {
+				case PROPERTY:
+				case EVENT:
+					if (!value.isEmpty()) {
+						return true;
+					}
+					break;
+				case INVALID:
+					if (logger != null) {
+						logger.println(getError());
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the kind of the current line
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the current line, trimmed
+	 */
+	public String getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the 1-based number of the current line
+	 */
+	public int getLineNo() {
+		return lineNo;
+	}
+
+	/**
+	 * @return the trimmed name left of the equal sign, null for comments, blank and invalid lines
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the trimmed value right of the equal sign, null for comments, blank and invalid lines. For the
+	 *         <code>buildautomatically</code> line, "true" or "false".
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the part of an event key after <code>events.</code>, null if the current line is no event
+	 */
+	public String getEventField() {
+		return kind == Kind.EVENT ? key.substring(EVENTS_PREFIX.length()) : null;
+	}
+
+	/**
+	 * @return the message describing why the current line is invalid
+	 */
+	public String getError() {
+		return "Ignoring line " + lineNo + " of the request body, expected name = value: " + line; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * @param body
+	 *            the request body
+	 * @return true if the body has an <code>events.</code> line with a value
+	 */
+	public static boolean hasEvents(CharSequence body) {
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(body);
+		while (tokenizer.nextEntry(null)) {
+			if (tokenizer.kind == Kind.EVENT) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param body
+	 *            the request body
+	 * @return true if the body asks for the build parameters to be read from a file
+	 */
+	public static boolean isBuildAutomatically(CharSequence body) {
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(body);
+		while (tokenizer.next()) {
+			if (tokenizer.kind == Kind.BUILD_AUTOMATICALLY && "true".equals(tokenizer.value)) { //$NON-NLS-1$
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,156 @@
+package com.compuware.ispw.restapi.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import com.compuware.jenkins.common.configuration.CpwrGlobalConfiguration;
+import com.compuware.jenkins.common.configuration.HostConnection;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * A host connection resolved once: the normalized CES URL and the ISPW host label (srid) of a connection id. Snapshots
+ * are cached per connection id and dropped whenever the Compuware global configuration is saved, so steps and pollers
+ * do not look up the global configuration and parse the CES URL on every request.
+ */
+public final class ResolvedConnection {
+
+	private static Logger logger = Logger.getLogger(ResolvedConnection.class);
+
+	private static final ConcurrentMap<String, ResolvedConnection> cache = new ConcurrentHashMap<>();
+
+	private final String connectionId;
+	private final String cesUrl;
+	private final String ispwHostLabel;
+	// why the CES URL is unusable, null if it is valid
+	private final String cesUrlError;
+
+	private ResolvedConnection(String connectionId, String cesUrl, String ispwHostLabel, String cesUrlError) {
+		this.connectionId = connectionId;
+		this.cesUrl = cesUrl;
+		this.ispwHostLabel = ispwHostLabel;
+		this.cesUrlError = cesUrlError;
+	}
+
+	/**
+	 * @param connectionId
+	 *            the host connection id
+	 * @return the resolved connection
+	 * @throws AbortException
+	 *             if there is no host connection with this id
+	 */
+	public static ResolvedConnection get(String connectionId) throws AbortException {
+		String key = StringUtils.trimToEmpty(connectionId);
+		ResolvedConnection connection = cache.get(key);
+		if (connection == null) {
+			// unknown connections are not cached, they may be configured any time
+			connection = resolve(key);
+			ResolvedConnection previous = cache.putIfAbsent(key, connection);
+			if (previous != null) {
+				connection = previous;
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Drop all snapshots, the next lookup resolves the connections again
+	 */
+	public static void invalidateAll() {
+		if (!cache.isEmpty()) {
+			cache.clear();
+			if (RestApiUtils.isIspwDebugMode()) {
+				logger.info("...host connection cache cleared");
+			}
+		}
+	}
+
+	static ResolvedConnection resolve(String connectionId) throws AbortException {
+		HostConnection hostConnection = CpwrGlobalConfiguration.get().getHostConnection(connectionId);
+		if (hostConnection == null) {
+			throw new AbortException(
+					"Host connection " + connectionId //$NON-NLS-1$
+							+ " does NOT exist. Please re-configure in 'Manage Jenkins | Configure System | Compuware Configurations' section"); //$NON-NLS-1$
+		}
+
+		String host = StringUtils.trimToEmpty(hostConnection.getHost());
+		String port = StringUtils.trimToEmpty(hostConnection.getPort());
+		String ispwHostLabel = host + "-" + port; //$NON-NLS-1$
+
+		String cesUrl = StringUtils.trimToEmpty(hostConnection.getCesUrl());
+		String cesUrlError = null;
+		if (!cesUrl.toLowerCase().startsWith("http")) { //$NON-NLS-1$
+			cesUrlError = "Host connection does NOT contain a valid CES URL. Please re-configure in 'Manage Jenkins | Configure System | Compuware Configurations' section; CES URL=" //$NON-NLS-1$
+					+ cesUrl;
+		} else {
+			try {
+				cesUrl = normalize(new URL(cesUrl));
+			} catch (MalformedURLException x) {
+				cesUrlError = "Host connection does NOT contain a valid CES URL. Please re-configure in 'Manage Jenkins | Configure System | Compuware Configurations' section: " //$NON-NLS-1$
+						+ x.getMessage() + "; CES URL=" + cesUrl; //$NON-NLS-1$
+			}
+		}
+
+		return new ResolvedConnection(connectionId, cesUrl, ispwHostLabel, cesUrlError);
+	}
+
+	// protocol://host:port, with the default port of the protocol if none is given
+	private static String normalize(URL url) {
+		String protocol = url.getProtocol();
+		String host = url.getHost();
+		int port = url.getPort();
+
+		if (port <= 0) {
+			if ("http".equals(protocol.toLowerCase())) { //$NON-NLS-1$
+				port = 80;
+			} else if ("https".equals(protocol.toLowerCase())) { //$NON-NLS-1$
+				port = 443;
+			}
+		}
+
+		return protocol + "://" + host + ":" + port; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public String getConnectionId() {
+		return connectionId;
+	}
+
+	/**
+	 * @return the CES base URL, protocol://host:port
+	 * @throws AbortException
+	 *             if the connection has no valid CES URL
+	 */
+	public String getCesUrl() throws AbortException {
+		if (cesUrlError != null) {
+			throw new AbortException(cesUrlError);
+		}
+		return cesUrl;
+	}
+
+	/**
+	 * @return the ISPW host label (srid), host-port
+	 */
+	public String getIspwHostLabel() {
+		return ispwHostLabel;
+	}
+
+	/**
+	 * Drops the cached connections when the Compuware global configuration is saved
+	 */
+	@Extension
+	public static class ConfigurationListener extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof CpwrGlobalConfiguration) {
+				invalidateAll();
+			}
+		}
+	}
+}
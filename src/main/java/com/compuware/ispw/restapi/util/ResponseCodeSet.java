@@ -0,0 +1,107 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A set of accepted HTTP response codes, parsed once from an expression such as <code>100:399,404</code>: a comma
+ * separated list of single codes or intervals from:to. The codes are kept as a bitset over 100 to 599, so checking a
+ * response, e.g. on every poll of a set, is a single bit test. Intervals reaching outside of 100 to 599 are cut to it,
+ * no response has such a code.
+ */
+public final class ResponseCodeSet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int MIN_CODE = 100;
+	static final int MAX_CODE = 599;
+
+	// the expressions of all steps are few, parse each of them once; expressions expanded from parameters may not be,
+	// so only so many are kept, requests and steps keep their own set anyway
+	static final int MAX_CACHED = Integer.getInteger(ResponseCodeSet.class.getName() + ".maxCached", 256);
+	private static final ConcurrentMap<String, ResponseCodeSet> parsed = new ConcurrentHashMap<>();
+
+	private final long[] bits = new long[(MAX_CODE - MIN_CODE) / 64 + 1];
+	private final String expression;
+
+	private ResponseCodeSet(String expression) {
+		this.expression = expression;
+	}
+
+	/**
+	 * @param expression
+	 *            single codes or intervals from:to, separated by commas
+	 * @return the set of codes, shared by the callers with the same expression unless too many expressions are in use
+	 * @throws IllegalArgumentException
+	 *             if the expression is not valid
+	 */
+	public static ResponseCodeSet of(String expression) {
+		String key = expression.trim();
+		ResponseCodeSet codes = parsed.get(key);
+		if (codes == null) {
+			codes = parse(key);
+			if (parsed.size() < MAX_CACHED) {
+				parsed.putIfAbsent(key, codes);
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * @param expression
+	 *            single codes or intervals from:to, separated by commas
+	 * @return the set of codes
+	 * @throws IllegalArgumentException
+	 *             if the expression is not valid
+	 */
+	public static ResponseCodeSet parse(String expression) {
+		ResponseCodeSet codes = new ResponseCodeSet(expression.trim());
+		for (String code : expression.split(",")) {
+			String[] fromTo = code.trim().split(":");
+			if (fromTo.length > 2) {
+				throw new IllegalArgumentException(
+						"Code " + code + " should be an interval from:to or a single value");
+			}
+
+			int from = parseCode(fromTo[0]);
+			int to = fromTo.length != 1 ? parseCode(fromTo[1]) : from;
+			if (from > to) {
+				throw new IllegalArgumentException("Interval " + code + " should be FROM less than TO");
+			}
+
+			for (int c = Math.max(from, MIN_CODE); c <= Math.min(to, MAX_CODE); c++) {
+				codes.bits[(c - MIN_CODE) >> 6] |= 1L << (c - MIN_CODE);
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * @param code
+	 *            a response code
+	 * @return true if the code is accepted
+	 */
+	public boolean contains(int code) {
+		if (code < MIN_CODE || code > MAX_CODE) {
+			return false;
+		}
+		return (bits[(code - MIN_CODE) >> 6] & 1L << (code - MIN_CODE)) != 0;
+	}
+
+	private static int parseCode(String code) {
+		try {
+			return Integer.parseInt(code.trim());
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Invalid number " + code);
+		}
+	}
+
+	/**
+	 * @return the expression the set was parsed from
+	 */
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
@@ -1,13 +1,7 @@
 package com.compuware.ispw.restapi.util;
 
-import static com.cloudbees.plugins.credentials.CredentialsMatchers.filter;
-import static com.cloudbees.plugins.credentials.CredentialsMatchers.withId;
-import static com.cloudbees.plugins.credentials.CredentialsProvider.lookupCredentials;
 import java.io.PrintStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -26,6 +20,7 @@ import com.compuware.ispw.model.rest.MessageResponse;
 import com.compuware.ispw.restapi.Constants;
 import com.compuware.ispw.restapi.JsonProcessor;
 import com.compuware.ispw.restapi.ResponseContentSupplier;
+import com.compuware.ispw.restapi.action.IspwActionRegistry;
 import com.compuware.jenkins.common.configuration.CpwrGlobalConfiguration;
 import com.compuware.jenkins.common.configuration.HostConnection;
 import hudson.AbortException;
@@ -45,6 +40,9 @@ public class RestApiUtils {
 
 	private static Logger logger = Logger.getLogger(RestApiUtils.class);
 
+	private static final Pattern PARAM_PATTERN = Pattern.compile("\\{(\\w+)\\}");
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\w*\\}");
+
 	public static String join(String delimiter, String[] stringArray, boolean appendEqualSign) {
 		String result = StringUtils.EMPTY;
 
@@ -182,67 +180,23 @@ public class RestApiUtils {
 	}
 	
 	public static String getCesUrl(String connectionId) throws AbortException {
-		
-		HostConnection hostConnection = getHostConnection(connectionId);
-
-		String cesUrl = StringUtils.trimToEmpty(hostConnection.getCesUrl());
-
-		if (!cesUrl.toLowerCase().startsWith("http")) {
-			throw new AbortException(
-					"Host connection does NOT contain a valid CES URL. Please re-configure in 'Manage Jenkins | Configure System | Compuware Configurations' section; CES URL="
-							+ cesUrl);
-		}
-
-		try
-		{
-			URL url = new URL(cesUrl);
-			String protocol = url.getProtocol();
-			String host = url.getHost();
-			int port = url.getPort();
-			
-			if (port <= 0) {
-				if("http".equals(protocol.toLowerCase())) {
-					port = 80;
-				} else if("https".equals(protocol.toLowerCase())) {
-					port = 443;
-				}
-			}
-
-			cesUrl = protocol + "://" + host + ":" + port;
-		} catch (MalformedURLException x) {
-			throw new AbortException(
-					"Host connection does NOT contain a valid CES URL. Please re-configure in 'Manage Jenkins | Configure System | Compuware Configurations' section: "
-							+ x.getMessage() + "; CES URL=" + cesUrl);
-		}
-
-		return cesUrl;
+		return ResolvedConnection.get(connectionId).getCesUrl();
 	}
 	
-	public static String getIspwHostLabel(String connectionId) {
-		HostConnection hostConnection = getHostConnection(connectionId);
-
-		String host = StringUtils.trimToEmpty(hostConnection.getHost());
-		String port = StringUtils.trimToEmpty(hostConnection.getPort());
-
-		String cesIspwHost = host + "-" + port;
-
-		return cesIspwHost;
+	public static String getIspwHostLabel(String connectionId) throws AbortException {
+		return ResolvedConnection.get(connectionId).getIspwHostLabel();
 	}
 
 	public static String getCesToken(String credentialsId, Item item) {
-		List<StringCredentials> creds =
-				filter(lookupCredentials(StringCredentials.class, item,
-						ACL.SYSTEM, Collections.<DomainRequirement> emptyList()),
-						withId(StringUtils.trimToEmpty(credentialsId)));
+		StringCredentials cred = CredentialsCache.getSecretText(credentialsId, item);
 
 		String token = StringUtils.EMPTY;
-		if (creds != null && creds.size() > 0) {
-			StringCredentials cred = creds.get(0);
+		if (cred != null) {
 			token = cred.getSecret().getPlainText();
 		}
 
 		return token;
-	}
+	}
 	
 	public static ListBoxModel buildCredentialsIdItems(@AncestorInPath Jenkins context, @QueryParameter String credentialsId,
 			@AncestorInPath Item project)
@@ -273,15 +227,12 @@ public class RestApiUtils {
 			@AncestorInPath Jenkins context, @QueryParameter String ispwAction,
 			@AncestorInPath Item project) {
 
-		String[] publishedActions = ReflectUtils.listPublishedCommands();
-		
 		ListBoxModel model = new ListBoxModel();
 
 		model.add(new Option(StringUtils.EMPTY, StringUtils.EMPTY, false));
 
-		Arrays.sort(publishedActions);
-
-		for (String action : publishedActions) {
+		// already sorted
+		for (String action : IspwActionRegistry.get().getPublishedCommands()) {
 			boolean isSelected = false;
 
 			if (ispwAction != null) {
@@ -410,8 +361,7 @@ public class RestApiUtils {
 	public static List<String> listAllParams(String contextPath) {
 		List<String> queryParms = new ArrayList<String>();
 		
-		Pattern pattern = Pattern.compile("\\{(\\w+)\\}");
-		Matcher matcher = pattern.matcher(contextPath);
+		Matcher matcher = PARAM_PATTERN.matcher(contextPath);
 		while (matcher.find()) {
 			for (int i = 0; i < matcher.groupCount(); i++) {
 				String key = matcher.group(i);
@@ -483,9 +433,7 @@ public class RestApiUtils {
 	 */
 	public static ArrayList<String> getVariables(String s)
 	{
-		String regex = "\\{\\w*\\}";
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(s);
+		Matcher matcher = VARIABLE_PATTERN.matcher(s);
 
 		ArrayList<String> vars = new ArrayList<String>();
 		while (matcher.find())
@@ -0,0 +1,195 @@
+package com.compuware.ispw.restapi.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.log4j.Logger;
+
+/**
+ * Shared SSL contexts and socket factories, one per trust mode. Each trust mode has one SSL context for the life of
+ * the JVM, so all pooled clients using the same trust mode share its TLS session cache and a new connection to a CES
+ * host resumes the session instead of doing a full handshake.
+ * <p>
+ * A trust store can be pinned per CES host with the system property
+ * <code>com.compuware.ispw.restapi.util.SslSocketFactoryRegistry.trustStore.&lt;host&gt;</code>, with the host name in
+ * lower case, naming a JKS or PKCS12 file (by its .p12 or .pfx extension), and optionally
+ * <code>com.compuware.ispw.restapi.util.SslSocketFactoryRegistry.trustStorePassword.&lt;host&gt;</code>. Connections
+ * to a host with a pinned trust store only trust the certificates in it and verify the host name, even when the step
+ * ignores SSL errors.
+ */
+public class SslSocketFactoryRegistry {
+
+	private static Logger logger = Logger.getLogger(SslSocketFactoryRegistry.class);
+
+	private static final String PROPERTY_PREFIX = SslSocketFactoryRegistry.class.getName();
+
+	static final int SESSION_CACHE_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".sessionCacheSize", 1000);
+	static final int SESSION_TIMEOUT_SECONDS = Integer.getInteger(PROPERTY_PREFIX + ".sessionTimeoutSeconds", 3600);
+
+	static final String VERIFY = "verify";
+	static final String IGNORE = "ignore";
+	static final String PINNED = "pinned:";
+
+	private static final ConcurrentMap<String, SSLContext> contexts = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, SSLConnectionSocketFactory> factories = new ConcurrentHashMap<>();
+
+	private SslSocketFactoryRegistry() {
+	}
+
+	/**
+	 * @param host
+	 *            the CES host
+	 * @param ignoreSslErrors
+	 *            true to trust any certificate and host name
+	 * @return the trust mode for connections to the host, the key of its socket factory
+	 */
+	public static String getTrustMode(String host, boolean ignoreSslErrors) {
+		String trustStore = System.getProperty(PROPERTY_PREFIX + ".trustStore." + host.toLowerCase());
+		if (trustStore != null && !trustStore.trim().isEmpty()) {
+			return PINNED + host.toLowerCase();
+		}
+		return ignoreSslErrors ? IGNORE : VERIFY;
+	}
+
+	/**
+	 * @param trustMode
+	 *            a trust mode returned by {@link #getTrustMode(String, boolean)}
+	 * @return the shared socket factory of the trust mode
+	 */
+	public static SSLConnectionSocketFactory getSocketFactory(String trustMode) {
+		SSLConnectionSocketFactory factory = factories.get(trustMode);
+		if (factory == null) {
+			factory = factories.computeIfAbsent(trustMode,
+					mode -> new SSLConnectionSocketFactory(getSslContext(mode), getHostnameVerifier(mode)));
+		}
+		return factory;
+	}
+
+	/**
+	 * @param trustMode
+	 *            a trust mode returned by {@link #getTrustMode(String, boolean)}
+	 * @return the shared SSL context of the trust mode, for clients which do not use socket factories
+	 */
+	public static SSLContext getSslContext(String trustMode) {
+		SSLContext context = contexts.get(trustMode);
+		if (context == null) {
+			context = contexts.computeIfAbsent(trustMode, SslSocketFactoryRegistry::createSslContext);
+		}
+		return context;
+	}
+
+	/**
+	 * @param trustMode
+	 *            a trust mode returned by {@link #getTrustMode(String, boolean)}
+	 * @return the host name verifier of the trust mode
+	 */
+	public static HostnameVerifier getHostnameVerifier(String trustMode) {
+		return IGNORE.equals(trustMode) ? NoopHostnameVerifier.INSTANCE
+				: SSLConnectionSocketFactory.getDefaultHostnameVerifier();
+	}
+
+	private static SSLContext createSslContext(String trustMode) {
+		try {
+			if (IGNORE.equals(trustMode)) {
+				SSLContext sc = SSLContext.getInstance("TLS");
+				sc.init(null, new TrustManager[]{new NoopTrustManager()}, null);
+				configureSessions(sc);
+				return sc;
+			} else if (trustMode.startsWith(PINNED)) {
+				String host = trustMode.substring(PINNED.length());
+				SSLContext sc = SSLContext.getInstance("TLS");
+				sc.init(null, loadTrustManagers(host), null);
+				configureSessions(sc);
+				if (RestApiUtils.isIspwDebugMode())
+					logger.info("Pinned trust store for CES host " + host);
+				return sc;
+			} else {
+				return SSLContexts.createSystemDefault();
+			}
+		} catch (GeneralSecurityException | IOException e) {
+			throw new IllegalStateException("Failed to set up SSL for trust mode " + trustMode + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	private static void configureSessions(SSLContext sc) {
+		SSLSessionContext sessions = sc.getClientSessionContext();
+		if (sessions != null) {
+			sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+			sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+		}
+	}
+
+	private static TrustManager[] loadTrustManagers(String host) throws GeneralSecurityException, IOException {
+		File file = new File(System.getProperty(PROPERTY_PREFIX + ".trustStore." + host).trim());
+		String password = System.getProperty(PROPERTY_PREFIX + ".trustStorePassword." + host);
+
+		String name = file.getName().toLowerCase();
+		String type = name.endsWith(".p12") || name.endsWith(".pfx") ? "PKCS12" : "JKS";
+		KeyStore trustStore = KeyStore.getInstance(type);
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			trustStore.load(in, password != null ? password.toCharArray() : null);
+		}
+
+		TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		tmf.init(trustStore);
+		return tmf.getTrustManagers();
+	}
+
+	private static class NoopTrustManager extends X509ExtendedTrustManager {
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] arg0, String arg1)
+				throws CertificateException {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType)
+				throws CertificateException {
+
+		}
+
+		@Override
+		public X509Certificate[] getAcceptedIssuers() {
+			return null;
+		}
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+				throws CertificateException {
+		}
+
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+				throws CertificateException {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+				throws CertificateException {
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+				throws CertificateException {
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.compuware.ispw.restapi;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import com.compuware.ispw.model.rest.SetInfoResponse;
+import com.compuware.ispw.model.rest.TaskInfo;
+import com.compuware.ispw.model.rest.TaskListResponse;
+import com.compuware.ispw.model.rest.WorkListInfo;
+import com.compuware.ispw.model.rest.WorkListResponse;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * Compares parsing CES responses with the shared {@link JsonProcessor} against building a new mapper for every call,
+ * which is what each poll and each action log did before.
+ * <p>
+ * Not a unit test, run it from the test classpath: <code>java -cp ... com.compuware.ispw.restapi.JsonProcessorBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonProcessorBenchmark {
+
+	/**
+	 * Number of tasks and work list items in the list responses, a small and a large assignment
+	 */
+	@Param({"20", "500"})
+	public int items;
+
+	private String setInfoJson;
+	private String taskListJson;
+	private String workListJson;
+
+	private final JsonProcessor jsonProcessor = new JsonProcessor();
+
+	@Setup
+	public void setUp() {
+		setInfoJson = jsonProcessor.generate(createSetInfo());
+		taskListJson = jsonProcessor.generate(createTaskList(items));
+		workListJson = jsonProcessor.generate(createWorkList(items));
+	}
+
+	@Benchmark
+	public SetInfoResponse parseSetInfoShared() {
+		return new JsonProcessor().parse(setInfoJson, SetInfoResponse.class);
+	}
+
+	@Benchmark
+	public SetInfoResponse parseSetInfoPerCall() throws Exception {
+		return newMapper().readValue(setInfoJson, SetInfoResponse.class);
+	}
+
+	@Benchmark
+	public TaskListResponse parseTaskListShared() {
+		return new JsonProcessor().parse(taskListJson, TaskListResponse.class);
+	}
+
+	@Benchmark
+	public TaskListResponse parseTaskListPerCall() throws Exception {
+		return newMapper().readValue(taskListJson, TaskListResponse.class);
+	}
+
+	@Benchmark
+	public WorkListResponse parseWorkListShared() {
+		return new JsonProcessor().parse(workListJson, WorkListResponse.class);
+	}
+
+	@Benchmark
+	public WorkListResponse parseWorkListPerCall() throws Exception {
+		return newMapper().readValue(workListJson, WorkListResponse.class);
+	}
+
+	/**
+	 * The mapper set up the way JsonProcessor used to do it on every call
+	 */
+	private static ObjectMapper newMapper() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.setSerializationInclusion(Include.NON_NULL);
+		mapper.enable(SerializationFeature.INDENT_OUTPUT);
+		mapper.setAnnotationIntrospector(new JaxbAnnotationIntrospector(mapper.getTypeFactory()));
+		return mapper;
+	}
+
+	private static SetInfoResponse createSetInfo() {
+		SetInfoResponse setInfo = new SetInfoResponse();
+		setInfo.setSetid("S000241246");
+		setInfo.setApplicationId("PLAY");
+		setInfo.setStreamName("PLAY");
+		setInfo.setDescription("Generate tasks in assignment PLAY003141");
+		setInfo.setOwner("XDEVREG");
+		setInfo.setStartDate("2019-06-12");
+		setInfo.setStartTime("10:44");
+		setInfo.setDeployImplementationDate("2019-06-12");
+		setInfo.setDeployImplementationTime("10:44");
+		setInfo.setDeployActiveDate("2019-06-12");
+		setInfo.setDeployActiveTime("10:45");
+		setInfo.setState("Closed");
+		return setInfo;
+	}
+
+	private static TaskListResponse createTaskList(int count) {
+		TaskListResponse taskList = new TaskListResponse();
+		for (int i = 0; i < count; i++) {
+			TaskInfo task = new TaskInfo();
+			task.setTaskId(String.format("7E45E2E1%04d", i));
+			task.setApplication("PLAY");
+			task.setStream("PLAY");
+			task.setModuleName(String.format("TPROG%03d", i));
+			task.setModuleType(i % 3 == 0 ? "COPY" : "COB");
+			task.setUserId("XDEVREG");
+			task.setLevel("DEV1");
+			task.setCurrentLevel("DEV1");
+			task.setStartingLevel("DEV1");
+			task.setOperation("G");
+			task.setStatus("Active");
+			task.setSet("S000241246");
+			task.setContainer("PLAY003141");
+			task.setRelease(" ");
+			task.setClazz("1");
+			task.setVersion("12");
+			task.setInternalVersion("34");
+			task.setBaseVersion("11");
+			task.setReplaceVersion("0");
+			task.setGenerateSequence(" ");
+			task.setDateTime("2019-06-12T10:44:51Z");
+			task.setUrl("http://cw09:48226/ispw/cw09-47623/tasks/7E45E2E1" + String.format("%04d", i));
+			task.setSql(Boolean.FALSE);
+			task.setIms(Boolean.FALSE);
+			task.setCics(i % 2 == 0);
+			task.setProgram(i % 3 != 0);
+			taskList.addTask(task);
+		}
+		return taskList;
+	}
+
+	private static WorkListResponse createWorkList(int count) {
+		WorkListResponse workList = new WorkListResponse();
+		for (int i = 0; i < count; i++) {
+			WorkListInfo item = new WorkListInfo();
+			item.setTaskId(String.format("7E45E2E1%04d", i));
+			item.setAssignmentId("PLAY003141");
+			item.setApplication("PLAY");
+			item.setStream("PLAY");
+			item.setName(String.format("TPROG%03d", i));
+			item.setType(i % 3 == 0 ? "COPY" : "COB");
+			item.setOwner("XDEVREG");
+			item.setUser("XDEVREG");
+			item.setLevel("DEV1");
+			item.setPath("DEV1");
+			item.setEnvironment("DEV1");
+			item.setOperation("G");
+			item.setAction("Generate");
+			item.setClazz("1");
+			item.setVersion("12");
+			item.setReleaseId(" ");
+			item.setRefNumber(" ");
+			item.setDateTime("2019-06-12T10:44:51Z");
+			item.setTechnology("COBOL");
+			workList.addWorkListItem(item);
+		}
+		return workList;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(JsonProcessorBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,62 @@
+package com.compuware.ispw.restapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.compuware.ispw.restapi.PollSchedule.OperationType;
+import com.compuware.ispw.restapi.action.IspwCommand;
+
+/**
+ * Test case for PollSchedule
+ */
+public class PollScheduleTest {
+
+	private static void assertAround(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual,
+				actual >= expected * (1 - PollSchedule.JITTER) - 1 && actual <= expected * (1 + PollSchedule.JITTER) + 1);
+	}
+
+	@Test
+	public void testOperationTypes() {
+		assertEquals(OperationType.DEPLOY, OperationType.forCommand(IspwCommand.DeployAssignment));
+		assertEquals(OperationType.PROMOTE, OperationType.forCommand(IspwCommand.PromoteRelease));
+		assertEquals(OperationType.GENERATE, OperationType.forCommand(IspwCommand.GenerateTasksInAssignment));
+		assertEquals(OperationType.GENERATE, OperationType.forCommand(null));
+	}
+
+	@Test
+	public void testBackoffWithoutHistory() {
+		PollSchedule schedule = PollSchedule.forCommand(IspwCommand.GenerateTasksInAssignment, 0L);
+
+		assertAround(PollSchedule.INITIAL_INTERVAL, schedule.nextDelay(0L));
+		assertAround((long) (PollSchedule.INITIAL_INTERVAL * PollSchedule.BACKOFF_FACTOR), schedule.nextDelay(1000L));
+		for (int i = 0; i < 20; i++) {
+			schedule.nextDelay(2000L);
+		}
+		assertAround(OperationType.GENERATE.getMaxInterval(), schedule.nextDelay(60000L));
+
+		assertEquals(OperationType.GENERATE.getDefaultTimeout(), schedule.getTimeoutMillis());
+	}
+
+	@Test
+	public void testWaitForExpectedDuration() {
+		PollSchedule schedule = PollSchedule.forCommand(IspwCommand.DeployRelease, 20 * 60 * 1000L);
+
+		// far from the expected end, poll at the upper bound only
+		assertAround(OperationType.DEPLOY.getMaxInterval(), schedule.nextDelay(0L));
+		// close to it, start over with fast polls
+		assertAround(PollSchedule.INITIAL_INTERVAL, schedule.nextDelay(16 * 60 * 1000L));
+		assertAround((long) (PollSchedule.INITIAL_INTERVAL * PollSchedule.BACKOFF_FACTOR),
+				schedule.nextDelay(16 * 60 * 1000L + 1000L));
+	}
+
+	@Test
+	public void testTimeoutFollowsExpectedDuration() {
+		assertEquals(3 * 20 * 60 * 1000L,
+				PollSchedule.forCommand(IspwCommand.DeployRelease, 20 * 60 * 1000L).getTimeoutMillis());
+		assertEquals(OperationType.DEPLOY.getMaxTimeout(),
+				PollSchedule.forCommand(IspwCommand.DeployRelease, 24 * 60 * 60 * 1000L).getTimeoutMillis());
+		assertEquals(OperationType.PROMOTE.getDefaultTimeout(),
+				PollSchedule.forCommand(IspwCommand.PromoteAssignment, 1000L).getTimeoutMillis());
+	}
+}
@@ -0,0 +1,55 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import com.compuware.ispw.restapi.util.BoundedBodyReader.PayloadTooLargeException;
+
+/**
+ * Test case for BoundedBodyReader
+ */
+public class BoundedBodyReaderTest {
+
+	private static final String SET_EVENT = "{\"setId\":\"S000241246\",\"state\":\"Closed\",\"owner\":\"Jürgen\"}";
+
+	// returns a few bytes per read, so multi-byte characters get split between reads
+	private static InputStream trickle(byte[] bytes) {
+		return new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+	}
+
+	@Test
+	public void testReadUtf8() throws IOException {
+		byte[] bytes = SET_EVENT.getBytes(StandardCharsets.UTF_8);
+		assertEquals(SET_EVENT, BoundedBodyReader.read(trickle(bytes), null, 1000));
+		assertEquals(SET_EVENT, BoundedBodyReader.read(new ByteArrayInputStream(bytes), "UTF-8", SET_EVENT.length()));
+	}
+
+	@Test
+	public void testReadLargeBody() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			sb.append(SET_EVENT);
+		}
+		String body = sb.toString();
+		assertEquals(body, BoundedBodyReader.read(trickle(body.getBytes(StandardCharsets.UTF_8)), null, body.length()));
+	}
+
+	@Test(expected = PayloadTooLargeException.class)
+	public void testTooLarge() throws IOException {
+		BoundedBodyReader.read(new ByteArrayInputStream(SET_EVENT.getBytes(StandardCharsets.UTF_8)), null,
+				SET_EVENT.length() - 1);
+	}
+
+	@Test
+	public void testEmptyBody() throws IOException {
+		assertEquals("", BoundedBodyReader.read(new ByteArrayInputStream(new byte[0]), "unknown", 10));
+	}
+}
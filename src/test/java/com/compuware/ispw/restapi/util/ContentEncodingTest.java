@@ -0,0 +1,97 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+/**
+ * Test case for ContentEncoding
+ */
+public class ContentEncodingTest {
+
+	private static final String BODY = "{\"tasks\":[{\"taskId\":\"7E45E2D1CBB6\",\"moduleName\":\"TPROG01\"}]}";
+
+	@Test
+	public void testAcceptCompressed() {
+		HttpGet request = new HttpGet("http://localhost/ispw");
+		ContentEncoding.acceptCompressed(request);
+		assertEquals(ContentEncoding.ACCEPT_ENCODING, request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+
+		request = new HttpGet("http://localhost/ispw");
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+		ContentEncoding.acceptCompressed(request);
+		assertEquals(1, request.getHeaders(HttpHeaders.ACCEPT_ENCODING).length);
+		assertEquals("identity", request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+	}
+
+	@Test
+	public void testDecodeGzip() throws IOException {
+		HttpResponse response = response(compress(true), "gzip");
+		long decoded = ContentEncoding.getDecodedResponses();
+
+		ContentEncoding.decode(response);
+		assertNull(response.getEntity().getContentEncoding());
+		assertEquals(-1, response.getEntity().getContentLength());
+		assertFalse(response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(BODY, EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+		assertEquals(decoded + 1, ContentEncoding.getDecodedResponses());
+	}
+
+	@Test
+	public void testDecodeDeflate() throws IOException {
+		HttpResponse response = response(compress(false), "deflate");
+
+		ContentEncoding.decode(response);
+		assertEquals(BODY, EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testUnknownEncodingLeftAlone() throws IOException {
+		HttpResponse response = response(BODY.getBytes(StandardCharsets.UTF_8), "br");
+		HttpEntity entity = response.getEntity();
+
+		ContentEncoding.decode(response);
+		assertSame(entity, response.getEntity());
+	}
+
+	@Test
+	public void testSmallRequestNotCompressed() throws IOException {
+		HttpEntity entity = new StringEntity(BODY, StandardCharsets.UTF_8);
+		assertSame(entity, ContentEncoding.compress(entity));
+		assertNull(ContentEncoding.compress(null));
+	}
+
+	private static HttpResponse response(byte[] body, String encoding) {
+		ByteArrayEntity entity = new ByteArrayEntity(body);
+		entity.setContentEncoding(encoding);
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(entity);
+		response.addHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+		return response;
+	}
+
+	private static byte[] compress(boolean gzip) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+			out.write(BODY.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,65 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Test case for ContentMatcher
+ */
+public class ContentMatcherTest {
+
+	private static final String TASK_LIST = "{\"tasks\":[{\"taskId\":\"7E45E99CF4F4\",\"moduleName\":\"TPROG01\","
+			+ "\"userId\":\"Jürgen\",\"operation\":\"G\"}],\"message\":\"\"}";
+
+	// returns a few bytes per read, so multi-byte characters get split between reads
+	private static InputStream trickle(byte[] bytes) {
+		return new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+	}
+
+	@Test
+	public void testNothingToMatch() {
+		assertNull(ContentMatcher.of(null, null));
+		assertNull(ContentMatcher.of(ContentMatcher.lines(" \n"), Collections.singletonList("")));
+	}
+
+	@Test
+	public void testOverlappingSubstrings() throws IOException {
+		ContentMatcher matcher = ContentMatcher.of(ContentMatcher.lines("he\r\nshe\nhers\nhis"), null);
+		ContentMatcher.Scan scan = matcher.newScan();
+		scan.feed(new StringReader("ushers"));
+		assertEquals(Arrays.asList("his"), scan.getMissing());
+	}
+
+	@Test
+	public void testExpectedAndForbidden() throws IOException {
+		ContentMatcher matcher = ContentMatcher.of(Arrays.asList("\"operation\":\"G\"", "Jürgen", "TPROG02"),
+				Arrays.asList("\"message\":\"\"", "error"));
+
+		ContentMatcher.Scan scan = matcher.newScan();
+		InputStream in = scan.watch(trickle(TASK_LIST.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[16];
+		for (int n; (n = in.read(buffer)) >= 0;) {
+			out.write(buffer, 0, n);
+		}
+
+		// the body passes through unchanged
+		assertEquals(TASK_LIST, new String(out.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList("TPROG02"), scan.getMissing());
+		assertEquals(Arrays.asList("\"message\":\"\""), scan.getForbiddenFound());
+	}
+}
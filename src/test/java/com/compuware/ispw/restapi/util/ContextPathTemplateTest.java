@@ -0,0 +1,91 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for ContextPathTemplate
+ */
+public class ContextPathTemplateTest {
+
+	private Map<String, String> values;
+
+	@Before
+	public void setUp() {
+		values = new HashMap<String, String>();
+		values.put("srid", "cw09-47623");
+	}
+
+	@Test
+	public void testDropUnboundQueryParams() {
+		values.put("assignmentId", "PLAY000313");
+		values.put("mtype", "COB");
+
+		String path = ContextPathTemplate
+				.compile("/ispw/{srid}/assignments/{assignmentId}/tasks/deploy?level={level}&mname={mname}&mtype={mtype}")
+				.expand(values);
+
+		assertEquals("/ispw/cw09-47623/assignments/PLAY000313/tasks/deploy?mtype=COB", path);
+	}
+
+	@Test
+	public void testNoQueryParamBound() {
+		String path = ContextPathTemplate.compile("/ispw/{srid}/worklist?inProgress={inProgress}&level={level}")
+				.expand(values);
+
+		assertEquals("/ispw/cw09-47623/worklist", path);
+	}
+
+	@Test
+	public void testRequiredQueryParams() {
+		values.put("mtype", "COB");
+
+		String path = ContextPathTemplate.compile("/ispw/{srid}/assignments?level={level}&mtype={mtype}")
+				.expand(values, false);
+
+		assertEquals("/ispw/cw09-47623/assignments?level={level}&mtype=COB", path);
+		assertEquals(Arrays.asList("level"), RestApiUtils.getVariables(path));
+	}
+
+	@Test
+	public void testUnboundPathVariable() {
+		String path = ContextPathTemplate.compile("/ispw/{srid}/releases/{releaseId}/tasks?level={level}").expand(values);
+
+		assertEquals("/ispw/cw09-47623/releases/{releaseId}/tasks", path);
+		assertEquals(Arrays.asList("releaseId"), RestApiUtils.getVariables(path));
+	}
+
+	@Test
+	public void testRepeatedParam() {
+		values.put("taskId", "7E45E2E1, 7E45E2E2,");
+		values.put("level", "DEV1");
+
+		String path = ContextPathTemplate.compile("/ispw/{srid}/build?taskId={taskId*}&level={level}&mname={mname}")
+				.expand(values);
+
+		assertEquals("/ispw/cw09-47623/build?taskId=7E45E2E1&taskId=7E45E2E2&level=DEV1", path);
+	}
+
+	@Test
+	public void testPercentEncoding() {
+		values.put("description", "Fix A&B = 100%");
+
+		String path = ContextPathTemplate.compile("/ispw/{srid}/containers/list?description={description}")
+				.expand(values);
+
+		assertEquals("/ispw/cw09-47623/containers/list?description=Fix%20A%26B%20%3D%20100%25", path);
+	}
+
+	@Test
+	public void testCompiledOnce() {
+		String template = "/ispw/{srid}/sets/{setId}";
+
+		assertSame(ContextPathTemplate.compile(template), ContextPathTemplate.compile(template));
+		assertEquals(Arrays.asList("srid", "setId"), ContextPathTemplate.compile(template).getVariables());
+	}
+}
@@ -0,0 +1,88 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import org.junit.Test;
+import com.compuware.ces.model.HttpHeader;
+import com.compuware.ispw.model.request.Assignment;
+import com.compuware.ispw.model.rest.DeploymentResponse;
+import com.compuware.ispw.model.rest.SetInfo;
+import com.compuware.ispw.model.rest.TaskInfo;
+
+/**
+ * Test case for PropertyBinder
+ */
+public class PropertyBinderTest {
+
+	@Test
+	public void testXmlElementName() {
+		SetInfo setInfo = new SetInfo();
+		PropertyBinder binder = PropertyBinder.forClass(SetInfo.class);
+
+		assertTrue(binder.set(setInfo, "runtimeConfiguration", "TPZP"));
+		assertEquals("TPZP", setInfo.getRuntimeConfig());
+		assertEquals("TPZP", binder.get(setInfo, "runtimeConfiguration"));
+
+		// the field name is not the JSON name when the field is annotated
+		assertFalse(binder.set(setInfo, "runtimeConfig", "OTHER"));
+		assertEquals("TPZP", setInfo.getRuntimeConfig());
+	}
+
+	@Test
+	public void testFieldName() {
+		Assignment assignment = new Assignment();
+		PropertyBinder binder = PropertyBinder.forClass(Assignment.class);
+
+		assertTrue(binder.set(assignment, "defaultStream", "PLAY"));
+		assertEquals("PLAY", assignment.getDefaultStream());
+		assertEquals("PLAY", binder.get(assignment, "defaultStream"));
+	}
+
+	@Test
+	public void testUnknownProperty() {
+		Assignment assignment = new Assignment();
+		PropertyBinder binder = PropertyBinder.forClass(Assignment.class);
+
+		assertFalse(binder.hasProperty("unknown"));
+		assertFalse(binder.set(assignment, "unknown", "value"));
+		assertEquals("", binder.get(assignment, "unknown"));
+	}
+
+	@Test
+	public void testConversion() {
+		TaskInfo taskInfo = new TaskInfo();
+		PropertyBinder binder = PropertyBinder.forClass(TaskInfo.class);
+
+		assertTrue(binder.set(taskInfo, "sql", "true"));
+		assertEquals(Boolean.TRUE, taskInfo.getSql());
+		assertEquals("true", binder.get(taskInfo, "sql"));
+	}
+
+	@Test
+	public void testConversionFailure() {
+		DeploymentResponse deployment = new DeploymentResponse();
+		PropertyBinder binder = PropertyBinder.forClass(DeploymentResponse.class);
+
+		assertTrue(binder.set(deployment, "requestId", "42"));
+		assertEquals(42L, deployment.getRequestId());
+
+		// a mistyped value is not set, the property keeps its value
+		assertFalse(binder.set(deployment, "requestId", "4x2"));
+		assertEquals(42L, deployment.getRequestId());
+
+		assertTrue(binder.set(deployment, "requestId", ""));
+		assertEquals(0L, deployment.getRequestId());
+	}
+
+	@Test
+	public void testAssignableValue() {
+		SetInfo setInfo = new SetInfo();
+		ArrayList<HttpHeader> httpHeaders = new ArrayList<HttpHeader>();
+
+		assertTrue(PropertyBinder.forClass(SetInfo.class).set(setInfo, "httpHeaders", httpHeaders));
+		assertSame(httpHeaders, setInfo.getHttpHeaders());
+	}
+}
@@ -0,0 +1,78 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+import com.compuware.ispw.restapi.util.RequestBodyTokenizer.Kind;
+
+/**
+ * Test case for RequestBodyTokenizer
+ */
+public class RequestBodyTokenizerTest {
+
+	@Test
+	public void testKinds() {
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(
+				"# comment\r\n\n  level = DEV1 \r\nevents.name=Completed\nBuildAutomatically = true\nno equal sign");
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.COMMENT, tokenizer.getKind());
+		assertEquals(1, tokenizer.getLineNo());
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.BLANK, tokenizer.getKind());
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.PROPERTY, tokenizer.getKind());
+		assertEquals("level", tokenizer.getKey());
+		assertEquals("DEV1", tokenizer.getValue());
+		assertEquals(3, tokenizer.getLineNo());
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.EVENT, tokenizer.getKind());
+		assertEquals("events.name", tokenizer.getKey());
+		assertEquals("name", tokenizer.getEventField());
+		assertEquals("Completed", tokenizer.getValue());
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.BUILD_AUTOMATICALLY, tokenizer.getKind());
+		assertEquals("true", tokenizer.getValue());
+
+		assertTrue(tokenizer.next());
+		assertEquals(Kind.INVALID, tokenizer.getKind());
+		assertEquals(6, tokenizer.getLineNo());
+
+		assertFalse(tokenizer.next());
+	}
+
+	@Test
+	public void testNextEntry() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PrintStream logger = new PrintStream(out, true);
+
+		RequestBodyTokenizer tokenizer = new RequestBodyTokenizer(
+				"assignmentId = PLAY000313\nlevel =\n# mname = TPROG\ngarbage\nruntimeConfiguration=TPZP\n");
+
+		assertTrue(tokenizer.nextEntry(logger));
+		assertEquals("assignmentId", tokenizer.getKey());
+		assertTrue(tokenizer.nextEntry(logger));
+		assertEquals("runtimeConfiguration", tokenizer.getKey());
+		assertEquals(5, tokenizer.getLineNo());
+		assertFalse(tokenizer.nextEntry(logger));
+
+		assertTrue(out.toString().contains("line 4"));
+	}
+
+	@Test
+	public void testIsBuildAutomatically() {
+		assertTrue(RequestBodyTokenizer.isBuildAutomatically("BUILDautomatically true\n###"));
+		assertTrue(RequestBodyTokenizer.isBuildAutomatically("level=DEV1\nbuildautomatically = TRUE"));
+		assertFalse(RequestBodyTokenizer.isBuildAutomatically("# buildautomatically = true \n# comment"));
+		assertFalse(RequestBodyTokenizer.isBuildAutomatically("buildautomatically = false \n# comment"));
+		assertFalse(RequestBodyTokenizer.isBuildAutomatically(null));
+		assertFalse(RequestBodyTokenizer.isBuildAutomatically(""));
+	}
+}
@@ -0,0 +1,55 @@
+package com.compuware.ispw.restapi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test case for ResponseCodeSet
+ */
+public class ResponseCodeSetTest {
+
+	@Test
+	public void testIntervalsAndSingleCodes() {
+		ResponseCodeSet codes = ResponseCodeSet.parse("100:399, 404");
+		assertTrue(codes.contains(100));
+		assertTrue(codes.contains(163));
+		assertTrue(codes.contains(164));
+		assertTrue(codes.contains(399));
+		assertTrue(codes.contains(404));
+		assertFalse(codes.contains(400));
+		assertFalse(codes.contains(500));
+		assertEquals("100:399, 404", codes.toString());
+	}
+
+	@Test
+	public void testCodesOutsideOfHttp() {
+		ResponseCodeSet codes = ResponseCodeSet.parse("0:999");
+		assertTrue(codes.contains(100));
+		assertTrue(codes.contains(599));
+		assertFalse(codes.contains(99));
+		assertFalse(codes.contains(600));
+	}
+
+	@Test
+	public void testParsedOnce() {
+		assertSame(ResponseCodeSet.of("200:299"), ResponseCodeSet.of(" 200:299 "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNumber() {
+		ResponseCodeSet.parse("200:2xx");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReversedInterval() {
+		ResponseCodeSet.parse("299:200");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyBounds() {
+		ResponseCodeSet.parse("200:250:299");
+	}
+}